@@ -0,0 +1,116 @@
+package uac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserAccessCheckerBenchmark {
+
+    private static final int VALUES_PER_FIELD = 1024;
+    private static final int LOOKUPS = 1024;
+
+    @Param({"10", "1000", "10000"})
+    public int permissionCount;
+
+    @Param({"2", "4", "8"})
+    public int fieldCount;
+
+    @Param({"0.1", "0.5"})
+    public double wildcardRatio;
+
+    /**
+     * Share of lookup identities missing a field, which the pattern permission completes as a wildcard.
+     */
+    @Param({"0.0", "0.5"})
+    public double incompleteRatio;
+
+    /**
+     * When set, permissions only differ in fields lookups never carry, so most of them tie on best score.
+     */
+    @Param({"false", "true"})
+    public boolean tieHeavy;
+
+    private UserAccessChecker scanChecker;
+    private UserAccessChecker indexedChecker;
+    private ResourceIdentity[] lookups;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(20240601L);
+        final Set<ResourcePermission> permissions = new HashSet<>();
+        final UserAccessLevel[] levels = UserAccessLevel.values();
+        while (permissions.size() < permissionCount) {
+            final ResourceIdentity.Builder builder = new ResourceIdentity.Builder();
+            for (int f = 0; f < fieldCount; f++) {
+                if (random.nextDouble() < wildcardRatio) {
+                    builder.field(new WildcardField("field" + f));
+                } else {
+                    builder.field(new ValueField("field" + f, value(random, tieHeavy ? 2 : VALUES_PER_FIELD)));
+                }
+            }
+            if (tieHeavy) {
+                builder.field(new ValueField("tag" + permissions.size(), "t"));
+            }
+            final UserAccessLevel level = levels[1 + random.nextInt(levels.length - 1)];
+            permissions.add(new ResourcePermission(builder.build(), level));
+        }
+
+        final List<ResourceIdentity> identities = new ArrayList<>(LOOKUPS);
+        for (int i = 0; i < LOOKUPS; i++) {
+            final ResourceIdentity.Builder builder = new ResourceIdentity.Builder();
+            final int missing = random.nextDouble() < incompleteRatio ? random.nextInt(fieldCount) : -1;
+            for (int f = 0; f < fieldCount; f++) {
+                if (f != missing) {
+                    builder.field(new ValueField("field" + f, value(random, tieHeavy ? 2 : VALUES_PER_FIELD)));
+                }
+            }
+            identities.add(builder.build());
+        }
+
+        this.lookups = identities.toArray(new ResourceIdentity[0]);
+        this.scanChecker = new UserAccessChecker(userName -> permissions);
+        this.indexedChecker = new UserAccessChecker(new CompiledUserAccessControl(userName -> permissions));
+    }
+
+    @Benchmark
+    public UserAccessLevel scan() {
+        return scanChecker.getLevel("user", nextLookup());
+    }
+
+    @Benchmark
+    public UserAccessLevel indexed() {
+        return indexedChecker.getLevel("user", nextLookup());
+    }
+
+    private ResourceIdentity nextLookup() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return lookups[next];
+    }
+
+    private static String value(Random random, int bound) {
+        return "value" + random.nextInt(bound);
+    }
+}
@@ -0,0 +1,33 @@
+package uac;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("uac.AccessCheck")
+@Label("Access Check")
+@Category("User Access Control")
+@Description("A UserAccessChecker.getLevel call, including the permission set load")
+@Threshold("1 ms")
+@StackTrace(false)
+final class AccessCheckEvent extends jdk.jfr.Event {
+
+    @Label("User")
+    String userName;
+
+    @Label("Field Count")
+    int fieldCount;
+
+    @Label("Permission Count")
+    int permissionCount;
+
+    @Label("Best Score")
+    @Description("Score of the best-matching permissions, 2 per exact and 1 per wildcard or prefix field, zero when none matched")
+    int bestScore;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,166 @@
+package uac;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and distributions recorded by a {@link UserAccessChecker} built with metrics. Every recording is
+ * a handful of striped adds, so concurrent checks never contend on a shared lock or cache line.
+ */
+public final class AccessMetrics {
+
+    private final Histogram latency = new Histogram();
+    private final Histogram permissionSetSize = new Histogram();
+    private final Histogram paddedFields = new Histogram();
+    private final LongAdder[] decisions = new LongAdder[UserAccessLevel.values().length];
+    private final LongAdder noneGrantDenials = new LongAdder();
+    private final LongAdder noMatchDenials = new LongAdder();
+
+    public AccessMetrics() {
+        for (int i = 0; i < decisions.length; i++) {
+            decisions[i] = new LongAdder();
+        }
+    }
+
+    public Histogram latencyNanos() {
+        return latency;
+    }
+
+    public Histogram permissionSetSize() {
+        return permissionSetSize;
+    }
+
+    /**
+     * Number of fields of the user's first permission the checked identity lacked and that were matched
+     * as wildcards.
+     */
+    public Histogram paddedFields() {
+        return paddedFields;
+    }
+
+    public long decisions(UserAccessLevel level) {
+        return decisions[level.ordinal()].sum();
+    }
+
+    /**
+     * Denials where a best-match permission granted {@link UserAccessLevel#NONE}, overriding any other grant.
+     */
+    public long noneGrantDenials() {
+        return noneGrantDenials.sum();
+    }
+
+    /**
+     * Denials where no permission matched the identity at all, including users without permissions.
+     */
+    public long noMatchDenials() {
+        return noMatchDenials.sum();
+    }
+
+    void record(long latencyNanos, UserAccessLevel level, int decision, Set<ResourcePermission> permissionSet,
+                ResourceIdentity identity) {
+        latency.record(latencyNanos);
+        decisions[level.ordinal()].increment();
+        if (LevelMask.score(decision) == 0) {
+            noMatchDenials.increment();
+        } else if ((decision & LevelMask.NONE_SEEN) != 0) {
+            noneGrantDenials.increment();
+        }
+
+        if (permissionSet == null || permissionSet.isEmpty()) {
+            permissionSetSize.record(0);
+            paddedFields.record(0);
+            return;
+        }
+        permissionSetSize.record(permissionSet.size());
+        final Map<String, IdentityField> fieldMap = identity.getFieldMap();
+        int padded = 0;
+        for (String fieldName : permissionSet.iterator().next().getIdentity().getFieldMap().keySet()) {
+            if (!fieldMap.containsKey(fieldName)) {
+                padded++;
+            }
+        }
+        paddedFields.record(padded);
+    }
+
+    /**
+     * Histogram of non-negative values in power-of-two buckets: bucket {@code i} holds values below
+     * {@code 2^i} and at least {@code 2^(i-1)}, bucket 0 holds zero.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = Long.SIZE;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long value) {
+            final long clamped = Math.max(0, value);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(clamped)].increment();
+            sum.add(clamped);
+            max.accumulate(clamped);
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        public long sum() {
+            return sum.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        public double mean() {
+            final long count = count();
+            return count == 0 ? 0.0 : (double) sum() / count;
+        }
+
+        public long bucketCount(int bucket) {
+            return buckets[bucket].sum();
+        }
+
+        /**
+         * Returns an upper bound of the value below which the given percentage of recordings fall, accurate
+         * to the bucket and never above the largest recorded value.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            final long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    final long upperBound = (1L << i) - 1;
+                    return Math.min(upperBound, max());
+                }
+            }
+            return max();
+        }
+    }
+}
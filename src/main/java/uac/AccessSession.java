@@ -0,0 +1,55 @@
+package uac;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One user's checks within a single request. The user's permissions are fetched and compiled on the first
+ * check, and every decision is kept until the session is dropped, so a session should not outlive the request
+ * it serves. Creating one does no work, and it can be shared by the threads handling parts of the request.
+ */
+public final class AccessSession {
+
+    private final UserAccessChecker checker;
+    private final String userName;
+    private final Map<ResourceIdentity, UserAccessLevel> decisions = new ConcurrentHashMap<>();
+    private volatile PermissionIndex index;
+
+    AccessSession(UserAccessChecker checker, String userName) {
+        this.checker = checker;
+        this.userName = userName;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public Set<ResourcePermission> getPermissionSet() {
+        return index().getPermissionSet();
+    }
+
+    public UserAccessLevel getLevel(ResourceIdentity identity) {
+        final UserAccessLevel decided = decisions.get(identity);
+        if (decided != null) {
+            return decided;
+        }
+        final UserAccessLevel level = checker.getLevel(userName, index(), identity);
+        final UserAccessLevel raced = decisions.putIfAbsent(identity, level);
+        return raced != null ? raced : level;
+    }
+
+    private PermissionIndex index() {
+        PermissionIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    current = checker.getPermissionIndex(userName);
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+}
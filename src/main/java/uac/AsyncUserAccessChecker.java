@@ -0,0 +1,17 @@
+package uac;
+
+import java.util.concurrent.CompletableFuture;
+
+public final class AsyncUserAccessChecker {
+
+    private final AsyncUserAccessControl uac;
+
+    public AsyncUserAccessChecker(AsyncUserAccessControl uac) {
+        this.uac = uac;
+    }
+
+    public CompletableFuture<UserAccessLevel> getLevel(String userName, ResourceIdentity identity) {
+        return uac.getPermissionSetAsync(userName)
+                .thenApply(permissionSet -> UserAccessChecker.getLevel(permissionSet, identity));
+    }
+}
@@ -0,0 +1,21 @@
+package uac;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+public interface AsyncUserAccessControl {
+
+    CompletableFuture<Set<ResourcePermission>> getPermissionSetAsync(String userName);
+
+    /**
+     * Adapts a blocking {@link UserAccessControl} by running each lookup on a new virtual thread.
+     */
+    static AsyncUserAccessControl of(UserAccessControl uac) {
+        return of(uac, command -> Thread.ofVirtual().name("uac-loader").start(command));
+    }
+
+    static AsyncUserAccessControl of(UserAccessControl uac, Executor executor) {
+        return userName -> CompletableFuture.supplyAsync(() -> PermissionLoadEvent.load(uac, userName), executor);
+    }
+}
@@ -0,0 +1,195 @@
+package uac;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+public final class CachingUserAccessChecker {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 64;
+    private static final byte MAX_FREQUENCY = 3;
+
+    private final UserAccessChecker checker;
+    private final Segment[] segments;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingUserAccessChecker(UserAccessChecker checker, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.checker = checker;
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maximumSize / MIN_SEGMENT_CAPACITY)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maximumSize / segmentCount);
+        }
+    }
+
+    public UserAccessLevel getLevel(String userName, ResourceIdentity identity) {
+        final DecisionKey key = new DecisionKey(userName, identity);
+        final Segment segment = segmentFor(key);
+        final UserAccessLevel cached = segment.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        final long invalidationsBefore = invalidations.get();
+        final UserAccessLevel level = checker.getLevel(userName, identity);
+        if (segment.put(key, level, () -> invalidations.get() == invalidationsBefore)) {
+            evictions.increment();
+        }
+        return level;
+    }
+
+    public void invalidate(String userName) {
+        invalidateIf(key -> Objects.equals(key.userName(), userName));
+    }
+
+    /**
+     * Drops only the user's cached decisions the change can affect, or all of them if it moved the pattern.
+     */
+    public void invalidate(PermissionDelta delta) {
+        if (!delta.isEmpty()) {
+            invalidateIf(key -> Objects.equals(key.userName(), delta.userName()) && delta.affects(key.identity()));
+        }
+    }
+
+    public void invalidateAll() {
+        invalidateIf(key -> true);
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    void invalidateIf(Predicate<DecisionKey> predicate) {
+        // Bumped first so a concurrent miss computed against stale permissions is not stored afterwards.
+        invalidations.incrementAndGet();
+        for (Segment segment : segments) {
+            segment.removeIf(predicate);
+        }
+    }
+
+    private Segment segmentFor(DecisionKey key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    public record Stats(long hitCount, long missCount, long evictionCount) {
+
+        public long requestCount() {
+            return hitCount + missCount;
+        }
+
+        public double hitRate() {
+            long requests = requestCount();
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+    }
+
+    record DecisionKey(String userName, ResourceIdentity identity) {
+    }
+
+    /**
+     * Fixed-capacity CLOCK cache with small saturating use counters, so entries hit repeatedly survive
+     * several sweeps of the hand while one-off lookups are evicted first.
+     */
+    private static final class Segment {
+        private final Map<DecisionKey, Integer> slots;
+        private final DecisionKey[] keys;
+        private final UserAccessLevel[] levels;
+        private final byte[] frequencies;
+        private int size;
+        private int hand;
+
+        private Segment(int capacity) {
+            this.slots = HashMap.newHashMap(capacity);
+            this.keys = new DecisionKey[capacity];
+            this.levels = new UserAccessLevel[capacity];
+            this.frequencies = new byte[capacity];
+        }
+
+        private synchronized UserAccessLevel get(DecisionKey key) {
+            final Integer slot = slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+            if (frequencies[slot] < MAX_FREQUENCY) {
+                frequencies[slot]++;
+            }
+            return levels[slot];
+        }
+
+        private synchronized boolean put(DecisionKey key, UserAccessLevel level, BooleanSupplier valid) {
+            if (!valid.getAsBoolean() || slots.containsKey(key)) {
+                return false;
+            }
+            boolean evicted = false;
+            int slot;
+            if (size == keys.length) {
+                slot = victim();
+                slots.remove(keys[slot]);
+                evicted = true;
+            } else {
+                slot = freeSlot();
+                size++;
+            }
+            keys[slot] = key;
+            levels[slot] = level;
+            frequencies[slot] = 0;
+            slots.put(key, slot);
+            return evicted;
+        }
+
+        private synchronized void removeIf(Predicate<DecisionKey> predicate) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != null && predicate.test(keys[slot])) {
+                    slots.remove(keys[slot]);
+                    keys[slot] = null;
+                    levels[slot] = null;
+                    size--;
+                }
+            }
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private int victim() {
+            while (true) {
+                final int slot = hand;
+                hand = (hand + 1) % keys.length;
+                if (frequencies[slot] == 0) {
+                    return slot;
+                }
+                frequencies[slot]--;
+            }
+        }
+
+        private int freeSlot() {
+            while (keys[hand] != null) {
+                hand = (hand + 1) % keys.length;
+            }
+            return hand;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package uac;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches compiled permission sets of a slower {@link UserAccessControl}. An entry older than the refresh
+ * interval is still served while a background reload replaces it. Only entries past their expiry make a
+ * caller wait on the backend. The total number of cached permissions is kept under the maximum weight,
+ * dropping the least recently loaded users first.
+ */
+public final class CachingUserAccessControl implements IndexedUserAccessControl {
+
+    private final UserAccessControl uac;
+    private final long expireAfterNanos;
+    private final long refreshAfterNanos;
+    private final long maximumWeight;
+    private final Executor executor;
+    private final LongSupplier ticker;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Entry> loadOrder = new ConcurrentSkipListMap<>();
+    private final AtomicLong loadSequence = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private CachingUserAccessControl(Builder builder) {
+        this.uac = builder.uac;
+        this.expireAfterNanos = builder.expireAfter.toNanos();
+        this.refreshAfterNanos = builder.refreshAfter == null ? Long.MAX_VALUE : builder.refreshAfter.toNanos();
+        this.maximumWeight = builder.maximumWeight;
+        this.executor = builder.executor;
+        this.ticker = builder.ticker;
+    }
+
+    @Override
+    public PermissionIndex getPermissionIndex(String userName) {
+        final Entry entry = entries.get(userName);
+        if (entry != null) {
+            final long age = ticker.getAsLong() - entry.loadedAt;
+            if (age < expireAfterNanos) {
+                hits.increment();
+                if (age >= refreshAfterNanos && entry.refreshing.compareAndSet(false, true)) {
+                    refresh(userName, entry);
+                }
+                return entry.index;
+            }
+        }
+        misses.increment();
+        return load(userName).index;
+    }
+
+    public void invalidate(String userName) {
+        final InFlight loads = inFlight.get(userName);
+        if (loads != null) {
+            loads.invalidations.incrementAndGet();
+        }
+        final Entry removed = entries.remove(userName);
+        if (removed != null) {
+            loadOrder.remove(removed.sequence);
+            weight.addAndGet(-removed.weight);
+        }
+    }
+
+    public void invalidateAll() {
+        for (InFlight loads : inFlight.values()) {
+            loads.invalidations.incrementAndGet();
+        }
+        for (String userName : entries.keySet()) {
+            invalidate(userName);
+        }
+    }
+
+    public long weight() {
+        return weight.get();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), totalLoadTime.sum(),
+                evictions.sum());
+    }
+
+    private Entry load(String userName) {
+        final CompletableFuture<Entry> created = new CompletableFuture<>();
+        final CompletableFuture<Entry> existing = loading.putIfAbsent(userName, created);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+            }
+        }
+        try {
+            final Entry entry = fetch(userName);
+            created.complete(entry);
+            return entry;
+        } catch (RuntimeException ex) {
+            created.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(userName, created);
+        }
+    }
+
+    private void refresh(String userName, Entry stale) {
+        try {
+            executor.execute(() -> {
+                try {
+                    if (entries.get(userName) != fetch(userName)) {
+                        stale.refreshing.set(false); // The reload was discarded, so a later hit tries again.
+                    }
+                } catch (RuntimeException ex) {
+                    stale.refreshing.set(false); // Keep serving the stale entry and retry on a later hit.
+                }
+            });
+        } catch (RuntimeException ex) {
+            stale.refreshing.set(false);
+        }
+    }
+
+    private Entry fetch(String userName) {
+        final InFlight loads = inFlight.compute(userName, (name, current) -> {
+            final InFlight tracked = current != null ? current : new InFlight();
+            tracked.count++;
+            return tracked;
+        });
+        try {
+            return fetch(userName, loads, loads.invalidations.get());
+        } finally {
+            inFlight.computeIfPresent(userName, (name, current) -> --current.count == 0 ? null : current);
+        }
+    }
+
+    private Entry fetch(String userName, InFlight loads, long invalidationsBefore) {
+        final long start = ticker.getAsLong();
+        final PermissionIndex index;
+        try {
+            index = PermissionIndex.of(PermissionLoadEvent.load(uac, userName));
+        } catch (RuntimeException ex) {
+            loadFailures.increment();
+            totalLoadTime.add(ticker.getAsLong() - start);
+            throw ex;
+        }
+        final long loadedAt = ticker.getAsLong();
+        loadSuccesses.increment();
+        totalLoadTime.add(loadedAt - start);
+
+        final Entry entry = new Entry(userName, index, loadedAt, loadSequence.incrementAndGet());
+        if (loads.invalidations.get() == invalidationsBefore) {
+            store(entry);
+            // An invalidate landing between the check and the insert missed the entry, so drop it here.
+            if (loads.invalidations.get() != invalidationsBefore) {
+                discard(entry);
+            }
+        }
+        return entry;
+    }
+
+    private void discard(Entry entry) {
+        if (entries.remove(entry.userName, entry)) {
+            loadOrder.remove(entry.sequence);
+            weight.addAndGet(-entry.weight);
+        }
+    }
+
+    private void store(Entry entry) {
+        final Entry previous = entries.put(entry.userName, entry);
+        loadOrder.put(entry.sequence, entry);
+        if (previous != null) {
+            loadOrder.remove(previous.sequence);
+        }
+        weight.addAndGet(entry.weight - (previous != null ? previous.weight : 0));
+        while (weight.get() > maximumWeight) {
+            final Map.Entry<Long, Entry> eldestEntry = loadOrder.pollFirstEntry();
+            if (eldestEntry == null) {
+                break;
+            }
+            final Entry eldest = eldestEntry.getValue();
+            if (entries.remove(eldest.userName, eldest)) {
+                weight.addAndGet(-eldest.weight);
+                evictions.increment();
+            }
+        }
+    }
+
+    public record Stats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                        long totalLoadTimeNanos, long evictionCount) {
+
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        public double averageLoadPenaltyNanos() {
+            long loads = loadSuccessCount + loadFailureCount;
+            return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+        }
+    }
+
+    /**
+     * Invalidations of a user that arrived while loads of that user were running. Only users with a load in
+     * flight are tracked, and invalidating one user never discards another user's load.
+     */
+    private static final class InFlight {
+        private final AtomicLong invalidations = new AtomicLong();
+        private int count; // Guarded by the inFlight map's compute.
+    }
+
+    private static final class Entry {
+        private final String userName;
+        private final PermissionIndex index;
+        private final long loadedAt;
+        private final long sequence;
+        private final int weight;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(String userName, PermissionIndex index, long loadedAt, long sequence) {
+            this.userName = userName;
+            this.index = index;
+            this.loadedAt = loadedAt;
+            this.sequence = sequence;
+            this.weight = index.getPermissionSet().size();
+        }
+    }
+
+    public static class Builder {
+
+        private final UserAccessControl uac;
+        private Duration expireAfter = Duration.ofMinutes(10);
+        private Duration refreshAfter;
+        private long maximumWeight = Long.MAX_VALUE;
+        private Executor executor = command -> Thread.ofVirtual().name("uac-refresh").start(command);
+        private LongSupplier ticker = System::nanoTime;
+
+        public Builder(UserAccessControl uac) {
+            this.uac = uac;
+        }
+
+        public Builder expireAfterWrite(Duration expireAfter) {
+            this.expireAfter = expireAfter;
+            return this;
+        }
+
+        public Builder refreshAfterWrite(Duration refreshAfter) {
+            this.refreshAfter = refreshAfter;
+            return this;
+        }
+
+        public Builder maximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        Builder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public CachingUserAccessControl build() {
+            if (expireAfter.isNegative() || expireAfter.isZero()) {
+                throw new IllegalArgumentException("expireAfterWrite must be positive");
+            }
+            if (refreshAfter != null && refreshAfter.compareTo(expireAfter) >= 0) {
+                throw new IllegalArgumentException("refreshAfterWrite must be shorter than expireAfterWrite");
+            }
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("maximumWeight must not be negative");
+            }
+            return new CachingUserAccessControl(this);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package uac;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class CompiledUserAccessControl implements IndexedUserAccessControl {
+
+    private final UserAccessControl uac;
+    private final Map<String, PermissionIndex> indexes = new ConcurrentHashMap<>();
+
+    public CompiledUserAccessControl(UserAccessControl uac) {
+        this.uac = uac;
+    }
+
+    @Override
+    public PermissionIndex getPermissionIndex(String userName) {
+        return indexes.computeIfAbsent(userName, name -> PermissionIndex.of(PermissionLoadEvent.load(uac, name)));
+    }
+
+    public void invalidate(String userName) {
+        indexes.remove(userName);
+    }
+
+    /**
+     * Patches an already compiled index with a delta the backing store has published, instead of dropping it
+     * and recompiling on the next check. Writes go through the store; this view only reacts to what it
+     * published. If the patched set no longer starts with the store's first permission, it has drifted from
+     * the store and is dropped instead.
+     */
+    public void invalidate(PermissionDelta delta) {
+        indexes.computeIfPresent(delta.userName(), (name, index) -> {
+            final Set<ResourcePermission> permissionSet =
+                    PermissionDelta.applyTo(index.getPermissionSet(), delta.granted(), delta.revoked());
+            if (!Objects.equals(PermissionDelta.patternOf(permissionSet), delta.pattern())) {
+                return null;
+            }
+            return index.withDelta(permissionSet, delta);
+        });
+    }
+
+    public void invalidateAll() {
+        indexes.clear();
+    }
+}
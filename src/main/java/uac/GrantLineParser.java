@@ -0,0 +1,211 @@
+package uac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses one grant per line, either as CSV or as a flat JSON object.
+ * <pre>
+ * alice,WRITE,repository=demo,key=*
+ * {"user": "alice", "level": "WRITE", "fields": {"repository": "demo", "key": "*"}}
+ * </pre>
+ * A field value of {@code *} is a wildcard and one ending in {@code /**} is a prefix. CSV cells may be double-quoted, with {@code ""} for a quote.
+ */
+final class GrantLineParser {
+
+    private static final String WILDCARD = "*";
+
+    private GrantLineParser() {
+    }
+
+    record Grant(String userName, ResourcePermission permission) {
+    }
+
+    static Grant parseCsv(String line) {
+        final List<String> cells = csvCells(line);
+        if (cells.size() < 2) {
+            throw new IllegalArgumentException("expected user,level[,name=value...]");
+        }
+        final List<IdentityField> fields = new ArrayList<>(cells.size() - 2);
+        for (int i = 2; i < cells.size(); i++) {
+            final String cell = cells.get(i);
+            final int eq = cell.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("expected name=value but was '" + cell + "'");
+            }
+            fields.add(field(cell.substring(0, eq), cell.substring(eq + 1)));
+        }
+        return grant(cells.get(0), cells.get(1), fields);
+    }
+
+    static Grant parseJson(String line) {
+        return new JsonCursor(line).grant();
+    }
+
+    private static Grant grant(String userName, String level, List<IdentityField> fields) {
+        if (userName == null || userName.isEmpty()) {
+            throw new IllegalArgumentException("missing user");
+        }
+        if (level == null) {
+            throw new IllegalArgumentException("missing level");
+        }
+        final UserAccessLevel accessLevel;
+        try {
+            accessLevel = UserAccessLevel.valueOf(level.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("unknown level '" + level + "'");
+        }
+        final ResourceIdentity.Builder builder = new ResourceIdentity.Builder();
+        fields.forEach(builder::field);
+        return new Grant(userName, new ResourcePermission(builder.build(), accessLevel));
+    }
+
+    private static IdentityField field(String name, String value) {
+        if (WILDCARD.equals(value)) {
+            return new WildcardField(name);
+        }
+        return value.endsWith(PrefixField.SUFFIX) ? new PrefixField(name, value) : new ValueField(name, value);
+    }
+
+    private static List<String> csvCells(String line) {
+        final List<String> cells = new ArrayList<>();
+        final StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    /**
+     * Just enough JSON for one grant object: string members plus a {@code fields} object of strings.
+     * Unknown string members are ignored.
+     */
+    private static final class JsonCursor {
+        private final String text;
+        private int position;
+
+        private JsonCursor(String text) {
+            this.text = text;
+        }
+
+        private Grant grant() {
+            String userName = null;
+            String level = null;
+            final List<IdentityField> fields = new ArrayList<>();
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    final String member = string();
+                    expect(':');
+                    if ("fields".equals(member)) {
+                        expect('{');
+                        if (!consume('}')) {
+                            do {
+                                final String name = string();
+                                expect(':');
+                                fields.add(field(name, string()));
+                            } while (consume(','));
+                            expect('}');
+                        }
+                    } else if ("user".equals(member)) {
+                        userName = string();
+                    } else if ("level".equals(member)) {
+                        level = string();
+                    } else {
+                        string();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("trailing characters");
+            }
+            return GrantLineParser.grant(userName, level, fields);
+        }
+
+        private String string() {
+            expect('"');
+            final StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                final char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                } else if (c != '\\') {
+                    value.append(c);
+                } else if (position < text.length()) {
+                    final char escaped = text.charAt(position++);
+                    switch (escaped) {
+                        case '"', '\\', '/' -> value.append(escaped);
+                        case 'b' -> value.append('\b');
+                        case 'f' -> value.append('\f');
+                        case 'n' -> value.append('\n');
+                        case 'r' -> value.append('\r');
+                        case 't' -> value.append('\t');
+                        case 'u' -> {
+                            if (position + 4 > text.length()) {
+                                throw error("bad unicode escape");
+                            }
+                            try {
+                                value.append((char) Integer.parseInt(text, position, position + 4, 16));
+                            } catch (NumberFormatException ex) {
+                                throw error("bad unicode escape");
+                            }
+                            position += 4;
+                        }
+                        default -> throw error("bad escape");
+                    }
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (position + 1));
+        }
+    }
+}
@@ -4,6 +4,7 @@ public abstract class IdentityField {
 
     private final String name;
     private final String value;
+    private int hash;
 
     protected IdentityField(String name, String value) {
         this.name = name;
@@ -24,15 +25,30 @@ public abstract class IdentityField {
         if (o == null || getClass() != o.getClass()) return false;
 
         IdentityField that = (IdentityField) o;
+        if (hash != 0 && that.hash != 0 && hash != that.hash) return false;
 
-        return (name != null ? name.equals(that.name) : that.name == null) &&
-                (value != null ? value.equals(that.value) : that.value == null);
+        return (name != null ? name.equals(that.name) : that.name == null) && valueEquals(that);
+    }
+
+    /**
+     * Compares the values of two fields of the same class.
+     */
+    protected boolean valueEquals(IdentityField that) {
+        return value != null ? value.equals(that.value) : that.value == null;
+    }
+
+    protected int valueHashCode() {
+        return value != null ? value.hashCode() : 0;
     }
 
     @Override
     public int hashCode() {
-        int result = name != null ? name.hashCode() : 0;
-        result = 31 * result + (value != null ? value.hashCode() : 0);
+        int result = hash;
+        if (result == 0) {
+            result = name != null ? name.hashCode() : 0;
+            result = 31 * result + valueHashCode();
+            hash = result;
+        }
         return result;
     }
 
@@ -40,6 +56,6 @@ public abstract class IdentityField {
 
     @Override
     public String toString() {
-        return "IdentityField{name='" + name + '\'' + ", value='" + value + '\'' + '}';
+        return "IdentityField{name='" + name + '\'' + ", value='" + getValue() + '\'' + '}';
     }
 }
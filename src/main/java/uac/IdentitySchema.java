@@ -0,0 +1,238 @@
+package uac;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A fixed list of identity fields, registered once. Identities and permission sets bound to a schema keep one
+ * slot per field in arrays, holding interned field codes, so completing a lookup with the pattern's missing
+ * fields and scoring every permission are plain array walks with no map lookups. Resolution is the same as
+ * {@link UserAccessChecker#getLevel(String, ResourceIdentity)} on the equivalent unbound permissions.
+ */
+public final class IdentitySchema {
+
+    static final int ABSENT = -2;
+
+    private final String[] fieldNames;
+    private final Map<String, Integer> slots;
+    private final AtomicReference<SymbolTable> symbols;
+
+    private IdentitySchema(String[] fieldNames, int maxFields) {
+        if (fieldNames.length > LevelMask.MAX_FIELDS) {
+            throw new IllegalArgumentException("a schema may have at most " + LevelMask.MAX_FIELDS + " fields");
+        }
+        this.fieldNames = fieldNames;
+        this.slots = HashMap.newHashMap(fieldNames.length);
+        this.symbols = new AtomicReference<>(new SymbolTable(maxFields));
+        for (int slot = 0; slot < fieldNames.length; slot++) {
+            if (slots.put(fieldNames[slot], slot) != null) {
+                throw new IllegalArgumentException("duplicate field " + fieldNames[slot]);
+            }
+        }
+    }
+
+    public static IdentitySchema of(String... fieldNames) {
+        return new IdentitySchema(fieldNames.clone(), SymbolTable.DEFAULT_MAX_FIELDS);
+    }
+
+    /**
+     * Like {@link #of(String...)}, but swaps in a new symbol table once {@code maxFields} fields are interned.
+     * Permissions compiled earlier keep their own table and stay valid.
+     */
+    static IdentitySchema of(int maxFields, String... fieldNames) {
+        return new IdentitySchema(fieldNames.clone(), maxFields);
+    }
+
+    public List<String> fieldNames() {
+        return List.of(fieldNames);
+    }
+
+    /**
+     * Binds an identity of value fields given in schema order; a null value leaves that field out.
+     */
+    public Identity identity(String... values) {
+        if (values.length != fieldNames.length) {
+            throw new IllegalArgumentException("expected " + fieldNames.length + " values but got " + values.length);
+        }
+        final IdentityField[] fields = new IdentityField[fieldNames.length];
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                fields[slot] = new ValueField(fieldNames[slot], values[slot]);
+            }
+        }
+        return new Identity(this, fields);
+    }
+
+    /**
+     * Binds an identity. Fields outside the schema are dropped; no schema-bound permission uses them.
+     */
+    public Identity bind(ResourceIdentity identity) {
+        final IdentityField[] fields = new IdentityField[fieldNames.length];
+        for (IdentityField field : identity.fields()) {
+            final Integer slot = slots.get(field.getName());
+            if (slot != null) {
+                fields[slot] = field;
+            }
+        }
+        return new Identity(this, fields);
+    }
+
+    /**
+     * Compiles a permission set whose identities only use fields of this schema.
+     */
+    public Permissions compile(Set<ResourcePermission> permissionSet) {
+        final SymbolTable table = SymbolTable.current(symbols);
+        final int width = fieldNames.length;
+        final int size = permissionSet == null ? 0 : permissionSet.size();
+        final int[] codes = new int[size * width];
+        final IdentityField[] prefixes = new IdentityField[size * width];
+        final int[] masks = new int[size];
+        Arrays.fill(codes, ABSENT);
+        int p = 0;
+        for (ResourcePermission permission : permissionSet == null ? Set.<ResourcePermission>of() : permissionSet) {
+            for (IdentityField field : permission.getIdentity().fields()) {
+                final Integer slot = slots.get(field.getName());
+                if (slot == null) {
+                    throw new IllegalArgumentException("field " + field.getName() + " is not in the schema");
+                }
+                codes[p * width + slot] = table.internCode(field);
+                if (field instanceof PrefixField) {
+                    prefixes[p * width + slot] = field;
+                }
+            }
+            masks[p++] = LevelMask.of(permission.getAccessLevel());
+        }
+        // The first permission's fields are the slots a lookup lacking them completes as wildcards.
+        final int[] padding = new int[width];
+        Arrays.fill(padding, ABSENT);
+        for (int slot = 0; slot < width && size > 0; slot++) {
+            if (codes[slot] != ABSENT) {
+                padding[slot] = table.wildcardCode(table.internName(fieldNames[slot]));
+            }
+        }
+        return new Permissions(this, table, codes, prefixes, masks, padding);
+    }
+
+    public static final class Identity {
+        private final IdentitySchema schema;
+        private final IdentityField[] fields;
+        private Codes codes;
+
+        private Identity(IdentitySchema schema, IdentityField[] fields) {
+            this.schema = schema;
+            this.fields = fields;
+        }
+
+        public IdentitySchema schema() {
+            return schema;
+        }
+
+        public ResourceIdentity toResourceIdentity() {
+            return new ResourceIdentity(Arrays.stream(fields).filter(field -> field != null).toArray(IdentityField[]::new));
+        }
+
+        /**
+         * Codes of the fields by slot in {@code table}, resolved without interning; values no permission uses
+         * are unknown until one does.
+         */
+        private int[] codes(SymbolTable table) {
+            Codes cached = codes;
+            if (cached != null && cached.table == table
+                    && (cached.complete || cached.generation == table.generation())) {
+                return cached.codes;
+            }
+            final int generation = table.generation();
+            final int[] resolved = new int[fields.length];
+            boolean complete = true;
+            for (int slot = 0; slot < fields.length; slot++) {
+                resolved[slot] = fields[slot] == null ? ABSENT : table.findCode(fields[slot]);
+                complete &= resolved[slot] != SymbolTable.UNKNOWN;
+            }
+            // Swapped in as one object with final fields, so a racing reader never sees a partial array.
+            codes = new Codes(table, resolved, generation, complete);
+            return resolved;
+        }
+    }
+
+    private record Codes(SymbolTable table, int[] codes, int generation, boolean complete) {
+    }
+
+    public static final class Permissions {
+        private final IdentitySchema schema;
+        private final SymbolTable table;
+        private final int[] codes;
+        private final IdentityField[] prefixes;
+        private final int[] masks;
+        private final int[] padding;
+
+        private Permissions(IdentitySchema schema, SymbolTable table, int[] codes, IdentityField[] prefixes,
+                            int[] masks, int[] padding) {
+            this.schema = schema;
+            this.table = table;
+            this.codes = codes;
+            this.prefixes = prefixes;
+            this.masks = masks;
+            this.padding = padding;
+        }
+
+        public int size() {
+            return masks.length;
+        }
+
+        SymbolTable symbols() {
+            return table;
+        }
+
+        public UserAccessLevel getLevel(Identity identity) {
+            return LevelMask.decide(evaluate(identity));
+        }
+
+        int evaluate(Identity identity) {
+            if (identity.schema != schema) {
+                throw new IllegalArgumentException("identity is bound to another schema");
+            }
+            final int width = padding.length;
+            // Shared with other callers, so the pattern's padding is applied per slot while scoring.
+            final int[] lookup = identity.codes(table);
+
+            int maxScore = 0;
+            int levelMask = 0;
+            for (int p = 0, base = 0; p < masks.length; p++, base += width) {
+                final int score = score(base, lookup, identity.fields);
+                if (score > maxScore) {
+                    maxScore = score;
+                    levelMask = masks[p];
+                } else if (score == maxScore) {
+                    levelMask |= masks[p];
+                }
+            }
+            return maxScore << LevelMask.BITS | levelMask;
+        }
+
+        private int score(int base, int[] lookup, IdentityField[] lookupFields) {
+            int score = 0;
+            for (int slot = 0; slot < lookup.length; slot++) {
+                final int code = codes[base + slot];
+                final int looked = lookup[slot] != ABSENT ? lookup[slot] : padding[slot];
+                if (code == ABSENT || looked == ABSENT) {
+                    continue; // Fields neither the lookup nor the pattern has are ignored.
+                }
+                if (code == looked) {
+                    score += LevelMask.EXACT;
+                } else if ((code & SymbolTable.WILDCARD_BIT) != 0) {
+                    score += LevelMask.WILDCARD;
+                } else if ((code & SymbolTable.PREFIX_BIT) != 0
+                        && UserAccessChecker.prefixMatches(prefixes[base + slot], lookupFields[slot])) {
+                    score += LevelMask.prefix(((PrefixField) prefixes[base + slot]).segments().length);
+                } else {
+                    return 0;
+                }
+            }
+            return score;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package uac;
+
+import java.util.Arrays;
+
+/**
+ * Field name ids and field codes of a {@link ResourceIdentity}, sorted by name id, with the fields themselves.
+ * A code is the interned field id shifted left by two, with {@link SymbolTable#WILDCARD_BIT} set for wildcard
+ * fields and {@link SymbolTable#PREFIX_BIT} for prefix fields.
+ */
+final class IdentitySymbols {
+
+    final int[] names;
+    final int[] codes;
+    final IdentityField[] fields;
+    private final SymbolTable table;
+    private final boolean complete;
+    private final int generation;
+
+    private IdentitySymbols(int[] names, int[] codes, IdentityField[] fields, SymbolTable table, boolean complete,
+                            int generation) {
+        this.names = names;
+        this.codes = codes;
+        this.fields = fields;
+        this.table = table;
+        this.complete = complete;
+        this.generation = generation;
+    }
+
+    static IdentitySymbols intern(IdentityField[] fields, SymbolTable table) {
+        final int[] names = new int[fields.length];
+        final int[] codes = new int[fields.length];
+        final IdentityField[] sorted = fields.clone();
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = table.internName(fields[i].getName());
+            codes[i] = table.internCode(fields[i]);
+        }
+        sort(names, codes, sorted, names.length);
+        return new IdentitySymbols(names, codes, sorted, table, true, 0);
+    }
+
+    /**
+     * Resolves fields against the symbols interned so far without adding new ones. Names no permission
+     * uses are dropped and values no permission uses get {@link SymbolTable#UNKNOWN}, which matches nothing.
+     */
+    static IdentitySymbols resolve(IdentityField[] fields, SymbolTable table) {
+        final int generation = table.generation();
+        int[] names = new int[fields.length];
+        int[] codes = new int[fields.length];
+        IdentityField[] kept = new IdentityField[fields.length];
+        int size = 0;
+        boolean complete = true;
+        for (IdentityField field : fields) {
+            int name = table.findName(field.getName());
+            int code = table.findCode(field);
+            if (name == SymbolTable.UNKNOWN || code == SymbolTable.UNKNOWN) {
+                complete = false;
+            }
+            if (name != SymbolTable.UNKNOWN) {
+                names[size] = name;
+                codes[size] = code;
+                kept[size] = field;
+                size++;
+            }
+        }
+        if (size < fields.length) {
+            names = Arrays.copyOf(names, size);
+            codes = Arrays.copyOf(codes, size);
+            kept = Arrays.copyOf(kept, size);
+        }
+        sort(names, codes, kept, size);
+        return new IdentitySymbols(names, codes, kept, table, complete, generation);
+    }
+
+    boolean isInterned(SymbolTable table) {
+        return this.table == table && complete;
+    }
+
+    boolean isCurrent(SymbolTable table) {
+        return this.table == table && (complete || generation == table.generation());
+    }
+
+    private static void sort(int[] names, int[] codes, IdentityField[] fields, int size) {
+        for (int i = 1; i < size; i++) {
+            int name = names[i];
+            int code = codes[i];
+            IdentityField field = fields[i];
+            int j = i - 1;
+            while (j >= 0 && names[j] > name) {
+                names[j + 1] = names[j];
+                codes[j + 1] = codes[j];
+                fields[j + 1] = fields[j];
+                j--;
+            }
+            names[j + 1] = name;
+            codes[j + 1] = code;
+            fields[j + 1] = field;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 package uac;
 
 public enum IdentityType {
-    WILDCARD, VALUE
+    WILDCARD, VALUE, PREFIX
 }
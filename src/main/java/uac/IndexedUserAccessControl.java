@@ -0,0 +1,13 @@
+package uac;
+
+import java.util.Set;
+
+public interface IndexedUserAccessControl extends UserAccessControl {
+
+    PermissionIndex getPermissionIndex(String userName);
+
+    @Override
+    default Set<ResourcePermission> getPermissionSet(String userName) {
+        return getPermissionIndex(userName).getPermissionSet();
+    }
+}
@@ -0,0 +1,78 @@
+package uac;
+
+final class LevelMask {
+
+    static final int NONE_SEEN = 1;
+    static final int READ_SEEN = 2;
+    static final int WRITE_SEEN = 4;
+
+    // A decision packs the best score above the mask of levels seen at that score.
+    static final int BITS = 3;
+    static final int MASK = (1 << BITS) - 1;
+
+    // Scores count 2 per exact field and 1 per wildcard field in units of 1 << SPECIFICITY_BITS. A prefix
+    // field scores a wildcard plus its depth, so it ranks between the two and deeper prefixes rank first.
+    // PrefixField caps depth at MAX_PREFIX_DEPTH, so the depths of up to MAX_PREFIX_FIELDS prefix fields sum
+    // below one wildcard unit and no two depths tie. Scores fit while an identity has at most MAX_FIELDS
+    // fields; ResourceIdentity and IdentitySchema reject anything wider.
+    static final int SPECIFICITY_BITS = 16;
+    static final int EXACT = 2 << SPECIFICITY_BITS;
+    static final int WILDCARD = 1 << SPECIFICITY_BITS;
+    static final int MAX_PREFIX_DEPTH = 255;
+    static final int MAX_PREFIX_FIELDS = (WILDCARD - 1) / MAX_PREFIX_DEPTH;
+    static final int MAX_FIELDS = (Integer.MAX_VALUE >>> BITS) / EXACT;
+
+    private LevelMask() {
+    }
+
+    static int of(UserAccessLevel level) {
+        if (level == null) {
+            return 0;
+        }
+        return switch (level) {
+            case NONE -> NONE_SEEN;
+            case READ -> READ_SEEN;
+            case WRITE -> WRITE_SEEN;
+        };
+    }
+
+    static UserAccessLevel resolve(int mask) {
+        if ((mask & NONE_SEEN) != 0) {
+            return UserAccessLevel.NONE;
+        } else if ((mask & WRITE_SEEN) != 0) {
+            return UserAccessLevel.WRITE;
+        } else if ((mask & READ_SEEN) != 0) {
+            return UserAccessLevel.READ;
+        }
+        return UserAccessLevel.NONE;
+    }
+
+    static int prefix(int depth) {
+        return WILDCARD + depth;
+    }
+
+    /**
+     * Returns the score in whole field units: 2 per exact field and 1 per wildcard or prefix field.
+     */
+    static int fieldScore(int decision) {
+        return score(decision) >>> SPECIFICITY_BITS;
+    }
+
+    static int score(int decision) {
+        return decision >>> BITS;
+    }
+
+    /**
+     * Combines decisions over disjoint parts of one permission set: the higher score wins, equal scores pool
+     * their levels. The result does not depend on how the set was split.
+     */
+    static int merge(int a, int b) {
+        final int scoreA = score(a);
+        final int scoreB = score(b);
+        return scoreA > scoreB ? a : scoreB > scoreA ? b : a | b;
+    }
+
+    static UserAccessLevel decide(int decision) {
+        return score(decision) == 0 ? UserAccessLevel.NONE : resolve(decision & MASK);
+    }
+}
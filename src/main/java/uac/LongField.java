@@ -0,0 +1,40 @@
+package uac;
+
+/**
+ * A value field holding a number, such as a tenant, project or shard id. Equality and hashing use the number
+ * itself, so checks never format or parse it. It only equals another {@code LongField}, never a
+ * {@link ValueField} with the same digits.
+ */
+public class LongField extends IdentityField {
+
+    private final long value;
+
+    public LongField(String name, long value) {
+        super(name, null);
+        this.value = value;
+    }
+
+    public long getLongValue() {
+        return value;
+    }
+
+    @Override
+    public String getValue() {
+        return Long.toString(value);
+    }
+
+    @Override
+    public IdentityType getType() {
+        return IdentityType.VALUE;
+    }
+
+    @Override
+    protected boolean valueEquals(IdentityField that) {
+        return value == ((LongField) that).value;
+    }
+
+    @Override
+    protected int valueHashCode() {
+        return Long.hashCode(value);
+    }
+}
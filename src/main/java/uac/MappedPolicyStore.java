@@ -0,0 +1,157 @@
+package uac;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Serves permission sets straight from a memory-mapped policy file written by {@link PolicyWriter}.
+ * Nothing is decoded up front: a lookup binary-searches the user table in the mapping and decodes only
+ * that user's permissions, so heap use does not grow with the policy. The mapping is read-only and shared
+ * through the page cache with other processes mapping the same file.
+ */
+public final class MappedPolicyStore implements UserAccessControl, AutoCloseable {
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final int stringCount;
+    private final int userCount;
+    private final long stringOffsets;
+    private final long stringBlob;
+    private final long users;
+    private final long data;
+
+    private MappedPolicyStore(Arena arena, MemorySegment segment) throws IOException {
+        this.arena = arena;
+        this.segment = segment;
+        if (segment.byteSize() < PolicyFormat.HEADER_BYTES || intAt(0) != PolicyFormat.MAGIC) {
+            throw new IOException("not a binary policy file");
+        }
+        final int formatVersion = intAt(Integer.BYTES);
+        if (!PolicyFormat.isSupported(formatVersion)) {
+            throw new IOException("unsupported policy format version " + formatVersion);
+        }
+        this.stringCount = intAt(2L * Integer.BYTES);
+        this.userCount = intAt(3L * Integer.BYTES);
+        final int dataLength = intAt(4L * Integer.BYTES);
+        this.stringOffsets = PolicyFormat.HEADER_BYTES;
+        this.stringBlob = stringOffsets + (stringCount + 1L) * Integer.BYTES;
+        this.users = stringBlob + intAt(stringOffsets + (long) stringCount * Integer.BYTES);
+        this.data = users + (long) userCount * PolicyFormat.USER_ENTRY_INTS * Integer.BYTES;
+        if (data + (long) dataLength * Integer.BYTES != segment.byteSize()) {
+            throw new IOException("truncated or corrupt policy file");
+        }
+    }
+
+    public static MappedPolicyStore open(Path file) throws IOException {
+        final Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedPolicyStore(arena, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        } catch (IOException | RuntimeException ex) {
+            arena.close();
+            throw ex;
+        }
+    }
+
+    public int userCount() {
+        return userCount;
+    }
+
+    @Override
+    public Set<ResourcePermission> getPermissionSet(String userName) {
+        final long entry = find(userName.getBytes(StandardCharsets.UTF_8));
+        if (entry < 0) {
+            return Set.of();
+        }
+        final int count = intAt(entry + 2L * Integer.BYTES);
+        final Set<ResourcePermission> permissionSet = LinkedHashSet.newLinkedHashSet(count);
+        long position = data + (long) intAt(entry + Integer.BYTES) * Integer.BYTES;
+        for (int p = 0; p < count; p++) {
+            final int header = intAt(position);
+            position += Integer.BYTES;
+            final IdentityField[] fields = new IdentityField[PolicyFormat.fieldCountOf(header)];
+            for (int f = 0; f < fields.length; f++) {
+                final int word = intAt(position);
+                position += Integer.BYTES;
+                if (PolicyFormat.kindOf(word) == PolicyFormat.KIND_TYPED) {
+                    final int type = intAt(position);
+                    final int[] value = new int[PolicyFormat.typedInts(type)];
+                    for (int i = 0; i < value.length; i++) {
+                        value[i] = intAt(position + (i + 1L) * Integer.BYTES);
+                    }
+                    position += (value.length + 1L) * Integer.BYTES;
+                    fields[f] = PolicyFormat.typedField(string(PolicyFormat.nameOf(word)), type, value);
+                    continue;
+                }
+                String value = null;
+                if (PolicyFormat.hasValue(PolicyFormat.kindOf(word))) {
+                    final int valueId = intAt(position);
+                    position += Integer.BYTES;
+                    value = valueId == PolicyFormat.NO_STRING ? null : string(valueId);
+                }
+                fields[f] = PolicyFormat.field(PolicyFormat.kindOf(word), string(PolicyFormat.nameOf(word)), value);
+            }
+            permissionSet.add(new ResourcePermission(new ResourceIdentity(fields), PolicyFormat.levelOf(header)));
+        }
+        return Collections.unmodifiableSet(permissionSet);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private long find(byte[] name) {
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long entry = users + (long) mid * PolicyFormat.USER_ENTRY_INTS * Integer.BYTES;
+            final int cmp = compareString(intAt(entry), name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int id, byte[] name) {
+        final long start = intAt(stringOffsets + (long) id * Integer.BYTES);
+        final long length = intAt(stringOffsets + (id + 1L) * Integer.BYTES) - start;
+        final long common = Math.min(length, name.length);
+        for (long i = 0; i < common; i++) {
+            final int cmp = Byte.compareUnsigned(segment.get(ValueLayout.JAVA_BYTE, stringBlob + start + i), name[(int) i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Long.compare(length, name.length);
+    }
+
+    private String string(int id) {
+        final int start = intAt(stringOffsets + (long) id * Integer.BYTES);
+        final int end = intAt(stringOffsets + (id + 1L) * Integer.BYTES);
+        final byte[] bytes = new byte[end - start];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, stringBlob + start, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int intAt(long offset) {
+        return segment.get(INT, offset);
+    }
+}
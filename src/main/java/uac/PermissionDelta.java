@@ -0,0 +1,78 @@
+package uac;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The grants and revocations that actually changed one user's permissions. While the pattern (the identity of
+ * the user's first permission) stays the same, only identities a changed permission scores above zero for can
+ * resolve differently; a pattern change can move any decision of that user.
+ */
+public record PermissionDelta(String userName, Set<ResourcePermission> granted, Set<ResourcePermission> revoked,
+                              ResourceIdentity pattern, boolean patternChanged, long version) {
+
+    static PermissionDelta of(String userName, Set<ResourcePermission> before, Set<ResourcePermission> after,
+                              Collection<ResourcePermission> granted, Collection<ResourcePermission> revoked,
+                              long version) {
+        // A permission both revoked and granted moves to the end of the set, which can change the pattern.
+        final Set<ResourcePermission> grantedEffective = new LinkedHashSet<>();
+        for (ResourcePermission permission : granted) {
+            if (!before.contains(permission) || revoked.contains(permission)) {
+                grantedEffective.add(permission);
+            }
+        }
+        final Set<ResourcePermission> revokedEffective = new LinkedHashSet<>();
+        for (ResourcePermission permission : revoked) {
+            if (before.contains(permission)) {
+                revokedEffective.add(permission);
+            }
+        }
+        final ResourceIdentity pattern = patternOf(after);
+        return new PermissionDelta(userName, Collections.unmodifiableSet(grantedEffective),
+                Collections.unmodifiableSet(revokedEffective), pattern,
+                !Objects.equals(patternOf(before), pattern), version);
+    }
+
+    static Set<ResourcePermission> applyTo(Set<ResourcePermission> permissionSet,
+                                           Collection<ResourcePermission> granted,
+                                           Collection<ResourcePermission> revoked) {
+        final Set<ResourcePermission> applied = new LinkedHashSet<>(permissionSet);
+        applied.removeAll(revoked);
+        applied.addAll(granted);
+        return applied.isEmpty() ? Set.of() : Collections.unmodifiableSet(applied);
+    }
+
+    public boolean isEmpty() {
+        return granted.isEmpty() && revoked.isEmpty();
+    }
+
+    /**
+     * Tells whether a cached decision for this user on the identity may no longer hold.
+     */
+    public boolean affects(ResourceIdentity identity) {
+        if (patternChanged) {
+            return true;
+        }
+        if (isEmpty()) {
+            return false;
+        }
+        for (ResourcePermission permission : granted) {
+            if (UserAccessChecker.score(permission.getIdentity(), identity, pattern) > 0) {
+                return true;
+            }
+        }
+        for (ResourcePermission permission : revoked) {
+            if (UserAccessChecker.score(permission.getIdentity(), identity, pattern) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static ResourceIdentity patternOf(Set<ResourcePermission> permissionSet) {
+        return permissionSet.isEmpty() ? null : permissionSet.iterator().next().getIdentity();
+    }
+}
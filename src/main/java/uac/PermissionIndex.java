@@ -0,0 +1,372 @@
+package uac;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class PermissionIndex {
+
+    private static final Object ABSENT = new Object();
+    private static final Object OTHER = new Object();
+    private static final ResourcePermission[] NO_PERMISSIONS = new ResourcePermission[0];
+    private static final int MAX_OVERLAY = 32;
+
+    private static final PermissionIndex EMPTY =
+            new PermissionIndex(Set.of(), new String[0], new boolean[0], new Node(), List.of(), List.of());
+
+    private final Set<ResourcePermission> permissionSet;
+    private final String[] fieldNames;
+    private final WildcardField[] paddingFields;
+    private final Node root;
+    private final List<Set<IdentityField>> knownFields;
+    private final List<PrefixTrie<PrefixField>> knownPrefixes;
+    // A delta-updated index answers from the tree compiled for base and corrects for the overlay.
+    private final PermissionIndex base;
+    private final ResourcePermission[] added;
+    private final ResourcePermission[] removed;
+
+    private PermissionIndex(Set<ResourcePermission> permissionSet, String[] fieldNames, boolean[] padded, Node root,
+                            List<Set<IdentityField>> knownFields, List<PrefixTrie<PrefixField>> knownPrefixes) {
+        this.permissionSet = permissionSet;
+        this.fieldNames = fieldNames;
+        this.paddingFields = new WildcardField[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (padded[i]) {
+                paddingFields[i] = new WildcardField(fieldNames[i]);
+            }
+        }
+        this.root = root;
+        this.knownFields = knownFields;
+        this.knownPrefixes = knownPrefixes;
+        this.base = this;
+        this.added = NO_PERMISSIONS;
+        this.removed = NO_PERMISSIONS;
+    }
+
+    private PermissionIndex(PermissionIndex base, Set<ResourcePermission> permissionSet,
+                            ResourcePermission[] added, ResourcePermission[] removed) {
+        this.permissionSet = permissionSet;
+        this.fieldNames = base.fieldNames;
+        this.paddingFields = base.paddingFields;
+        this.root = base.root;
+        this.knownFields = base.knownFields;
+        this.knownPrefixes = base.knownPrefixes;
+        this.base = base;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    public static PermissionIndex of(Set<ResourcePermission> permissionSet) {
+        if (permissionSet == null || permissionSet.isEmpty()) {
+            return EMPTY;
+        }
+
+        // Frequent fields go first so permissions share the upper levels of the tree.
+        final Map<String, Integer> counts = new LinkedHashMap<>();
+        for (ResourcePermission permission : permissionSet) {
+            for (IdentityField field : permission.getIdentity().fields()) {
+                counts.merge(field.getName(), 1, Integer::sum);
+            }
+        }
+        final String[] fieldNames = counts.keySet().toArray(new String[0]);
+        Arrays.sort(fieldNames, Comparator.comparing(counts::get).reversed());
+        final Map<String, Integer> positions = HashMap.newHashMap(fieldNames.length);
+        for (int i = 0; i < fieldNames.length; i++) {
+            positions.put(fieldNames[i], i);
+        }
+
+        // Fields of the first permission that a lookup identity lacks are matched as wildcards.
+        final boolean[] padded = new boolean[fieldNames.length];
+        final ResourceIdentity patternIdentity = permissionSet.iterator().next().getIdentity();
+        for (IdentityField field : patternIdentity.fields()) {
+            padded[positions.get(field.getName())] = true;
+        }
+
+        final Node root = new Node();
+        final List<Set<IdentityField>> knownFields = new ArrayList<>(fieldNames.length);
+        final List<PrefixTrie<PrefixField>> knownPrefixes = new ArrayList<>(fieldNames.length);
+        for (int i = 0; i < fieldNames.length; i++) {
+            knownFields.add(new HashSet<>());
+            knownPrefixes.add(null);
+        }
+        for (ResourcePermission permission : permissionSet) {
+            // Visit only the permission's own fields, in level order.
+            final IdentityField[] fields = permission.getIdentity().fields();
+            final long[] levels = new long[fields.length];
+            for (int f = 0; f < fields.length; f++) {
+                levels[f] = (long) positions.get(fields[f].getName()) << Integer.SIZE | f;
+            }
+            Arrays.sort(levels);
+            Node node = root;
+            int depth = 0;
+            for (long level : levels) {
+                final int i = (int) (level >>> Integer.SIZE);
+                final IdentityField field = fields[(int) level];
+                knownFields.get(i).add(field);
+                if (field instanceof PrefixField prefix) {
+                    if (knownPrefixes.get(i) == null) {
+                        knownPrefixes.set(i, new PrefixTrie<>());
+                    }
+                    knownPrefixes.get(i).computeIfAbsent(prefix, () -> prefix);
+                }
+                if (i > depth) {
+                    node = node.skip(i);
+                }
+                node = node.child(field);
+                depth = i + 1;
+            }
+            if (depth < fieldNames.length) {
+                node = node.skip(fieldNames.length);
+            }
+            node.flags |= LevelMask.of(permission.getAccessLevel());
+        }
+        root.freeze();
+        return new PermissionIndex(Collections.unmodifiableSet(new LinkedHashSet<>(permissionSet)), fieldNames, padded, root, knownFields,
+                knownPrefixes);
+    }
+
+    public Set<ResourcePermission> getPermissionSet() {
+        return permissionSet;
+    }
+
+    public UserAccessLevel getLevel(ResourceIdentity identity) {
+        return LevelMask.decide(evaluate(identity));
+    }
+
+    int evaluate(ResourceIdentity identity) {
+        if (permissionSet.isEmpty()) {
+            return 0;
+        }
+
+        final Map<String, IdentityField> fieldMap = identity.getFieldMap();
+        final IdentityField[] lookupFields = new IdentityField[fieldNames.length];
+        final int[] remainingMax = new int[fieldNames.length + 1];
+        for (int i = fieldNames.length - 1; i >= 0; i--) {
+            IdentityField field = fieldMap.get(fieldNames[i]);
+            lookupFields[i] = field != null ? field : paddingFields[i];
+            remainingMax[i] = remainingMax[i + 1] + (lookupFields[i] != null ? LevelMask.EXACT : 0);
+        }
+
+        final int decision = search(root, 0, 0, 0, lookupFields, remainingMax);
+        return added.length == 0 && removed.length == 0 ? decision : correct(decision, identity);
+    }
+
+    /**
+     * Returns an index over the permission set with the delta applied. The compiled tree is kept and the
+     * changed permissions are scored next to it, until the overlay grows large or the pattern changes.
+     * The set is the unmodifiable result of applying the delta to this index's set.
+     */
+    PermissionIndex withDelta(Set<ResourcePermission> permissionSet, PermissionDelta delta) {
+        if (permissionSet.isEmpty() || base.permissionSet.isEmpty() || !permissionSet.iterator().next().getIdentity()
+                .equals(base.permissionSet.iterator().next().getIdentity())) {
+            return of(permissionSet);
+        }
+        final Set<ResourcePermission> overlayAdded = new LinkedHashSet<>(Arrays.asList(added));
+        final Set<ResourcePermission> overlayRemoved = new LinkedHashSet<>(Arrays.asList(removed));
+        for (Set<ResourcePermission> changed : List.of(delta.granted(), delta.revoked())) {
+            for (ResourcePermission permission : changed) {
+                final boolean compiled = base.permissionSet.contains(permission);
+                final boolean present = permissionSet.contains(permission);
+                if (compiled && !present) {
+                    overlayRemoved.add(permission);
+                } else {
+                    overlayRemoved.remove(permission);
+                }
+                if (!compiled && present) {
+                    // Interned now so scoring it on the lookup path does not touch the symbol table.
+                    permission.getIdentity().internSymbols(SymbolTable.shared());
+                    overlayAdded.add(permission);
+                } else {
+                    overlayAdded.remove(permission);
+                }
+            }
+        }
+        if (overlayAdded.size() + overlayRemoved.size() > MAX_OVERLAY) {
+            return of(permissionSet);
+        }
+        return new PermissionIndex(base, permissionSet,
+                overlayAdded.toArray(NO_PERMISSIONS), overlayRemoved.toArray(NO_PERMISSIONS));
+    }
+
+    private int correct(int decision, ResourceIdentity identity) {
+        final ResourceIdentity pattern = permissionSet.iterator().next().getIdentity();
+        final int bestScore = LevelMask.score(decision);
+        for (ResourcePermission permission : removed) {
+            final int score = UserAccessChecker.score(permission.getIdentity(), identity, pattern);
+            if (score > 0 && score >= bestScore) {
+                // A revoked permission was among the best matches; the levels it leaves are unknown.
+                return UserAccessChecker.evaluate(permissionSet, identity);
+            }
+        }
+        for (ResourcePermission permission : added) {
+            final int score = UserAccessChecker.score(permission.getIdentity(), identity, pattern);
+            final int currentScore = LevelMask.score(decision);
+            if (score > currentScore) {
+                decision = score << LevelMask.BITS | LevelMask.of(permission.getAccessLevel());
+            } else if (score == currentScore) {
+                decision |= LevelMask.of(permission.getAccessLevel());
+            }
+        }
+        return decision;
+    }
+
+    /**
+     * Returns a key shared by all identities that resolve to the same level against this index. Only
+     * fields some permission uses matter, and values no permission uses are indistinguishable.
+     */
+    Object decisionClass(ResourceIdentity identity) {
+        final Map<String, IdentityField> fieldMap = identity.getFieldMap();
+        final Object[] key = new Object[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            IdentityField field = fieldMap.get(fieldNames[i]);
+            if (field == null) {
+                field = paddingFields[i];
+            }
+            if (field == null) {
+                key[i] = ABSENT;
+            } else if (knownFields.get(i).contains(field)) {
+                key[i] = field;
+            } else if (knownPrefixes.get(i) != null && PrefixField.canMatch(field)) {
+                // Unknown values below the same deepest prefix match the same prefixes.
+                final PrefixField deepest = knownPrefixes.get(i).deepest(field.getValue());
+                key[i] = deepest == null ? OTHER : List.of(OTHER, deepest);
+            } else {
+                key[i] = OTHER;
+            }
+        }
+        if (added.length == 0) {
+            return Arrays.asList(key);
+        }
+        // Permissions outside the tree are told apart by how each one scores.
+        final ResourceIdentity pattern = permissionSet.iterator().next().getIdentity();
+        final Object[] scores = new Object[added.length];
+        for (int i = 0; i < added.length; i++) {
+            scores[i] = UserAccessChecker.score(added[i].getIdentity(), identity, pattern);
+        }
+        return List.of(Arrays.asList(key), Arrays.asList(scores));
+    }
+
+    private static int search(Node node, int depth, int score, int best,
+                              IdentityField[] lookupFields, int[] remainingMax) {
+        if (depth == lookupFields.length) {
+            final int bestScore = LevelMask.score(best);
+            if (score > bestScore) {
+                return score << LevelMask.BITS | node.flags;
+            }
+            return score == bestScore ? best | node.flags : best;
+        }
+
+        final int bound = score + remainingMax[depth];
+        final int bestScore = LevelMask.score(best);
+        if (bound < bestScore || bound == bestScore && (bound == 0 || (best & LevelMask.NONE_SEEN) != 0)) {
+            return best; // No permission below this node can change the outcome.
+        }
+
+        final IdentityField lookupField = lookupFields[depth];
+        if (lookupField == null) {
+            for (Node child : node.children.values()) {
+                best = search(child, depth + 1, score, best, lookupFields, remainingMax);
+            }
+        } else {
+            final Node exact = node.children.get(lookupField);
+            if (exact != null) {
+                best = search(exact, depth + 1, score + LevelMask.EXACT, best, lookupFields, remainingMax);
+            }
+            for (Node wildcard : node.wildcardChildren) {
+                if (wildcard != exact) {
+                    best = search(wildcard, depth + 1, score + LevelMask.WILDCARD, best, lookupFields, remainingMax);
+                }
+            }
+            if (node.prefixChildren != null && PrefixField.canMatch(lookupField)) {
+                final String value = lookupField.getValue();
+                PrefixTrie<Node> prefixes = node.prefixChildren;
+                int start = 0;
+                int segments = 0;
+                int slash;
+                while ((slash = value.indexOf('/', start)) >= 0
+                        && (prefixes = prefixes.child(value.substring(start, slash))) != null) {
+                    start = slash + 1;
+                    segments++;
+                    if (prefixes.target() != null && start < value.length()) {
+                        best = search(prefixes.target(), depth + 1, score + LevelMask.prefix(segments), best,
+                                lookupFields, remainingMax);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < node.skipDepths.length; i++) {
+            best = search(node.skipTargets[i], node.skipDepths[i], score, best, lookupFields, remainingMax);
+        }
+        return best;
+    }
+
+    /**
+     * A node at some depth of the tree. Runs of fields a permission does not have are not stored level by
+     * level: a skip edge jumps straight to the depth of the permission's next field, or to the leaf depth.
+     */
+    private static final class Node {
+        private static final int[] NO_DEPTHS = new int[0];
+        private static final Node[] NO_NODES = new Node[0];
+
+        private final Map<IdentityField, Node> children = new HashMap<>();
+        private final List<Node> wildcardChildren = new ArrayList<>();
+        private PrefixTrie<Node> prefixChildren;
+        private Map<Integer, Node> skips;
+        private int[] skipDepths = NO_DEPTHS;
+        private Node[] skipTargets = NO_NODES;
+        private int flags;
+
+        private Node child(IdentityField field) {
+            Node child = children.get(field);
+            if (child == null) {
+                child = new Node();
+                children.put(field, child);
+                if (field.getType() == IdentityType.WILDCARD) {
+                    wildcardChildren.add(child);
+                } else if (field instanceof PrefixField prefix) {
+                    if (prefixChildren == null) {
+                        prefixChildren = new PrefixTrie<>();
+                    }
+                    final Node target = child;
+                    prefixChildren.computeIfAbsent(prefix, () -> target);
+                }
+            }
+            return child;
+        }
+
+        private Node skip(int depth) {
+            if (skips == null) {
+                skips = new HashMap<>();
+            }
+            return skips.computeIfAbsent(depth, d -> new Node());
+        }
+
+        private void freeze() {
+            if (skips != null) {
+                skipDepths = new int[skips.size()];
+                skipTargets = new Node[skips.size()];
+                int i = 0;
+                for (Map.Entry<Integer, Node> entry : skips.entrySet()) {
+                    skipDepths[i] = entry.getKey();
+                    skipTargets[i] = entry.getValue();
+                    i++;
+                }
+                skips = null;
+            }
+            for (Node child : children.values()) {
+                child.freeze();
+            }
+            for (Node target : skipTargets) {
+                target.freeze();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package uac;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash-conses fields, identities and permissions: every equal instance passed in comes back as one canonical
+ * instance. Users holding the same grants then share one {@link ResourcePermission}, one
+ * {@link ResourceIdentity} and its fields, and equality checks between them end at the reference comparison.
+ * Canonical instances are held strongly until {@link #clear()}.
+ */
+public final class PermissionInterner {
+
+    private final Map<IdentityField, IdentityField> fields = new ConcurrentHashMap<>();
+    private final Map<ResourceIdentity, ResourceIdentity> identities = new ConcurrentHashMap<>();
+    private final Map<ResourcePermission, ResourcePermission> permissions = new ConcurrentHashMap<>();
+
+    public IdentityField field(IdentityField field) {
+        return canonical(fields, field);
+    }
+
+    public ResourceIdentity identity(ResourceIdentity identity) {
+        final ResourceIdentity existing = identities.get(identity);
+        if (existing != null) {
+            return existing;
+        }
+        final IdentityField[] source = identity.fields();
+        IdentityField[] shared = null;
+        for (int i = 0; i < source.length; i++) {
+            final IdentityField field = field(source[i]);
+            if (field != source[i]) {
+                if (shared == null) {
+                    shared = source.clone();
+                }
+                shared[i] = field;
+            }
+        }
+        return canonical(identities, shared == null ? identity : new ResourceIdentity(shared));
+    }
+
+    public ResourcePermission permission(ResourcePermission permission) {
+        final ResourcePermission existing = permissions.get(permission);
+        if (existing != null) {
+            return existing;
+        }
+        final ResourceIdentity identity = permission.getIdentity() == null ? null : identity(permission.getIdentity());
+        return canonical(permissions, identity == permission.getIdentity() ? permission
+                : new ResourcePermission(identity, permission.getAccessLevel()));
+    }
+
+    /**
+     * Returns an unmodifiable copy of the set, in the same order, holding canonical permissions.
+     */
+    public Set<ResourcePermission> permissions(Set<ResourcePermission> permissionSet) {
+        if (permissionSet == null || permissionSet.isEmpty()) {
+            return Set.of();
+        }
+        final Set<ResourcePermission> shared = LinkedHashSet.newLinkedHashSet(permissionSet.size());
+        for (ResourcePermission permission : permissionSet) {
+            shared.add(permission(permission));
+        }
+        return Collections.unmodifiableSet(shared);
+    }
+
+    public int fieldCount() {
+        return fields.size();
+    }
+
+    public int identityCount() {
+        return identities.size();
+    }
+
+    public int permissionCount() {
+        return permissions.size();
+    }
+
+    public void clear() {
+        permissions.clear();
+        identities.clear();
+        fields.clear();
+    }
+
+    private static <T> T canonical(Map<T, T> instances, T instance) {
+        final T existing = instances.putIfAbsent(instance, instance);
+        return existing != null ? existing : instance;
+    }
+}
@@ -0,0 +1,60 @@
+package uac;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+import java.util.Set;
+
+@Name("uac.PermissionLoad")
+@Label("Permission Set Load")
+@Category("User Access Control")
+@Description("A UserAccessControl.getPermissionSet call made by the library")
+@Threshold("10 ms")
+final class PermissionLoadEvent extends jdk.jfr.Event {
+
+    @Label("User")
+    String userName;
+
+    @Label("Field Count")
+    @Description("Number of fields of the first permission, which lookups are completed against")
+    int fieldCount;
+
+    @Label("Permission Count")
+    int permissionCount;
+
+    @Label("Outcome")
+    String outcome;
+
+    static Set<ResourcePermission> load(UserAccessControl uac, String userName) {
+        final PermissionLoadEvent event = new PermissionLoadEvent();
+        if (!event.isEnabled()) {
+            return uac.getPermissionSet(userName);
+        }
+        event.begin();
+        try {
+            final Set<ResourcePermission> permissionSet = uac.getPermissionSet(userName);
+            event.end();
+            if (event.shouldCommit()) {
+                event.userName = userName;
+                if (permissionSet != null && !permissionSet.isEmpty()) {
+                    event.permissionCount = permissionSet.size();
+                    event.fieldCount = permissionSet.iterator().next().getIdentity().getFieldMap().size();
+                }
+                event.outcome = event.permissionCount == 0 ? "EMPTY" : "LOADED";
+                event.commit();
+            }
+            return permissionSet;
+        } catch (RuntimeException ex) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.userName = userName;
+                event.outcome = "FAILED: " + ex.getClass().getName();
+                event.commit();
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package uac;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Holds every user's permissions as one immutable, versioned snapshot. Readers only read the current
+ * snapshot reference. Writers copy the user table with their changes and swap the copy in, retrying if
+ * another writer got there first, so each published version is complete and consistent. A user's
+ * permissions are compiled on the first check against them and kept for the life of that entry.
+ */
+public final class PermissionSnapshotStore implements IndexedUserAccessControl {
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(0, Map.of()));
+
+    public static PermissionSnapshotStore of(Map<String, Set<ResourcePermission>> permissionsByUser) {
+        PermissionSnapshotStore store = new PermissionSnapshotStore();
+        store.replaceAll(permissionsByUser);
+        return store;
+    }
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    public long version() {
+        return current.get().version;
+    }
+
+    @Override
+    public PermissionIndex getPermissionIndex(String userName) {
+        return current.get().getPermissionIndex(userName);
+    }
+
+    @Override
+    public Set<ResourcePermission> getPermissionSet(String userName) {
+        return current.get().getPermissionSet(userName);
+    }
+
+    public Decision getDecision(String userName, ResourceIdentity identity) {
+        return current.get().getDecision(userName, identity);
+    }
+
+    public long put(String userName, Set<ResourcePermission> permissionSet) {
+        return update(update -> update.put(userName, permissionSet));
+    }
+
+    public long remove(String userName) {
+        return update(update -> update.remove(userName));
+    }
+
+    public long replaceAll(Map<String, Set<ResourcePermission>> permissionsByUser) {
+        return update(update -> {
+            update.clear();
+            permissionsByUser.forEach(update::put);
+        });
+    }
+
+    public PermissionDelta grant(String userName, ResourcePermission permission) {
+        return apply(userName, List.of(permission), List.of());
+    }
+
+    public PermissionDelta revoke(String userName, ResourcePermission permission) {
+        return apply(userName, List.of(), List.of(permission));
+    }
+
+    /**
+     * Revokes and grants permissions of one user as one new version. A user's compiled index is carried over
+     * with the change applied rather than recompiled. Returns what actually changed, for invalidating cached
+     * decisions with {@link CachingUserAccessChecker#invalidate(PermissionDelta)}; nothing is published if
+     * the permissions stay the same.
+     */
+    public PermissionDelta apply(String userName, Collection<ResourcePermission> granted,
+                                 Collection<ResourcePermission> revoked) {
+        return apply(userName, granted, revoked, null);
+    }
+
+    /**
+     * Applies the change only while the user's set is still {@code expected}, if given; otherwise nothing
+     * changes and the returned delta is empty.
+     */
+    PermissionDelta apply(String userName, Collection<ResourcePermission> granted,
+                          Collection<ResourcePermission> revoked, Set<ResourcePermission> expected) {
+        while (true) {
+            final Snapshot previous = current.get();
+            final Entry entry = previous.entries.get(userName);
+            final Set<ResourcePermission> before = entry == null ? Set.of() : entry.permissionSet;
+            if (expected != null && before != expected) {
+                return new PermissionDelta(userName, Set.of(), Set.of(), PermissionDelta.patternOf(before), false,
+                        previous.version);
+            }
+            final Set<ResourcePermission> after = PermissionDelta.applyTo(before, granted, revoked);
+            final PermissionDelta delta = PermissionDelta.of(userName, before, after, granted, revoked,
+                    previous.version + 1);
+            if (delta.isEmpty()) {
+                return new PermissionDelta(userName, Set.of(), Set.of(), delta.pattern(), false, previous.version);
+            }
+            final Map<String, Entry> entries = new HashMap<>(previous.entries);
+            entries.put(userName, entry == null ? new Entry(after) : entry.withDelta(after, delta));
+            if (current.compareAndSet(previous, new Snapshot(delta.version(), Collections.unmodifiableMap(entries)))) {
+                return delta;
+            }
+        }
+    }
+
+    /**
+     * Applies several changes as one new version and returns that version. Only the user table copy is
+     * redone if a concurrent writer wins the swap.
+     */
+    public long update(Consumer<Update> changes) {
+        final Update update = new Update();
+        changes.accept(update);
+        while (true) {
+            final Snapshot previous = current.get();
+            final Snapshot next = update.applyTo(previous);
+            if (current.compareAndSet(previous, next)) {
+                return next.version;
+            }
+        }
+    }
+
+    public record Decision(UserAccessLevel level, long version) {
+    }
+
+    public static final class Snapshot {
+        private final long version;
+        private final Map<String, Entry> entries;
+
+        private Snapshot(long version, Map<String, Entry> entries) {
+            this.version = version;
+            this.entries = entries;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public Set<String> users() {
+            return entries.keySet();
+        }
+
+        public PermissionIndex getPermissionIndex(String userName) {
+            final Entry entry = entries.get(userName);
+            return entry == null ? PermissionIndex.of(null) : entry.index();
+        }
+
+        public Set<ResourcePermission> getPermissionSet(String userName) {
+            final Entry entry = entries.get(userName);
+            return entry == null ? Set.of() : entry.permissionSet;
+        }
+
+        public Decision getDecision(String userName, ResourceIdentity identity) {
+            return new Decision(getPermissionIndex(userName).getLevel(identity), version);
+        }
+    }
+
+    public static final class Update {
+        private final Map<String, Entry> changes = new LinkedHashMap<>();
+        private boolean cleared;
+
+        private Update() {
+        }
+
+        public Update put(String userName, Set<ResourcePermission> permissionSet) {
+            return putUnmodifiable(userName, permissionSet == null || permissionSet.isEmpty() ? Set.of()
+                    : Collections.unmodifiableSet(new LinkedHashSet<>(permissionSet)));
+        }
+
+        /**
+         * Stores the set without a defensive copy; callers pass sets nobody else can modify.
+         */
+        Update putUnmodifiable(String userName, Set<ResourcePermission> permissionSet) {
+            changes.put(userName, new Entry(permissionSet));
+            return this;
+        }
+
+        public Update remove(String userName) {
+            changes.put(userName, null);
+            return this;
+        }
+
+        public Update clear() {
+            changes.clear();
+            cleared = true;
+            return this;
+        }
+
+        private Snapshot applyTo(Snapshot previous) {
+            final Map<String, Entry> entries = cleared ? new HashMap<>() : new HashMap<>(previous.entries);
+            changes.forEach((userName, entry) -> {
+                if (entry == null) {
+                    entries.remove(userName);
+                } else {
+                    entries.put(userName, entry);
+                }
+            });
+            return new Snapshot(previous.version + 1, Collections.unmodifiableMap(entries));
+        }
+    }
+
+    private static final class Entry {
+        private final Set<ResourcePermission> permissionSet;
+        private volatile PermissionIndex index;
+
+        private Entry(Set<ResourcePermission> permissionSet) {
+            this.permissionSet = permissionSet;
+        }
+
+        private Entry withDelta(Set<ResourcePermission> permissionSet, PermissionDelta delta) {
+            final Entry entry = new Entry(permissionSet);
+            final PermissionIndex compiled = index;
+            if (compiled != null) {
+                entry.index = compiled.withDelta(permissionSet, delta);
+            }
+            return entry;
+        }
+
+        private PermissionIndex index() {
+            PermissionIndex compiled = index;
+            if (compiled == null) {
+                // Racing readers may both compile; the indexes are equivalent and either one is kept.
+                compiled = PermissionIndex.of(permissionSet);
+                index = compiled;
+            }
+            return compiled;
+        }
+    }
+}
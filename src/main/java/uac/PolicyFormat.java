@@ -0,0 +1,153 @@
+package uac;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Layout of the binary policy file written by {@link PolicyWriter}. All numbers are big-endian ints.
+ * <pre>
+ * header       magic, format version, string count, user count, data length in ints
+ * strings      string count + 1 byte offsets into the blob, then the UTF-8 blob
+ * users        per user, sorted by the UTF-8 bytes of the name: name id, offset of its first permission
+ *              in data, permission count
+ * data         per permission: field count &lt;&lt; 2 | level, then per field: name id &lt;&lt; 2 | kind,
+ *              followed by the value id for value and prefix fields, or for typed fields by the type
+ *              and the value as big-endian ints: two for a long, four for a UUID
+ * </pre>
+ * Version 2 added typed fields; version 1 files read unchanged.
+ * Permissions keep the iteration order of the written set, so the first permission, whose fields complete
+ * lookup identities, is the same after reading.
+ */
+final class PolicyFormat {
+
+    static final int MAGIC = 0x55414350; // "UACP"
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_BYTES = 5 * Integer.BYTES;
+    static final int USER_ENTRY_INTS = 3;
+
+    static final int KIND_VALUE = 0;
+    static final int KIND_WILDCARD = 1;
+    static final int KIND_PREFIX = 2;
+    static final int KIND_TYPED = 3;
+    static final int KIND_BITS = 2;
+
+    static final int TYPE_LONG = 0;
+    static final int TYPE_UUID = 1;
+    static final int LEVEL_BITS = 2;
+
+    static final int NO_STRING = -1;
+
+    static final Comparator<String> NAME_ORDER = (a, b) -> Arrays.compareUnsigned(
+            a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+
+    private static final UserAccessLevel[] LEVELS = {null, UserAccessLevel.NONE, UserAccessLevel.READ,
+            UserAccessLevel.WRITE};
+
+    private PolicyFormat() {
+    }
+
+    static boolean isSupported(int formatVersion) {
+        return formatVersion >= 1 && formatVersion <= FORMAT_VERSION;
+    }
+
+    static int levelCode(UserAccessLevel level) {
+        return level == null ? 0 : level.ordinal() + 1;
+    }
+
+    static int kindOf(int fieldWord) {
+        return fieldWord & ((1 << KIND_BITS) - 1);
+    }
+
+    static int nameOf(int fieldWord) {
+        return fieldWord >>> KIND_BITS;
+    }
+
+    static boolean hasValue(int kind) {
+        return kind == KIND_VALUE || kind == KIND_PREFIX;
+    }
+
+    /**
+     * Returns how many ints follow a field word, given the word after it.
+     */
+    static int valueInts(int kind, int next) {
+        return switch (kind) {
+            case KIND_WILDCARD -> 0;
+            case KIND_TYPED -> 1 + typedInts(next);
+            default -> 1;
+        };
+    }
+
+    static int typedInts(int type) {
+        return switch (type) {
+            case TYPE_LONG -> 2;
+            case TYPE_UUID -> 4;
+            default -> throw new IllegalArgumentException("unknown field type: " + type);
+        };
+    }
+
+    static int fieldCountOf(int permissionWord) {
+        return permissionWord >>> LEVEL_BITS;
+    }
+
+    static UserAccessLevel levelOf(int permissionWord) {
+        return LEVELS[permissionWord & ((1 << LEVEL_BITS) - 1)];
+    }
+
+    static int kind(IdentityField field) {
+        if (field.getClass() == ValueField.class) {
+            return KIND_VALUE;
+        } else if (field.getClass() == WildcardField.class) {
+            return KIND_WILDCARD;
+        } else if (field.getClass() == PrefixField.class) {
+            return KIND_PREFIX;
+        } else if (field.getClass() == LongField.class || field.getClass() == UuidField.class) {
+            return KIND_TYPED;
+        }
+        throw new IllegalArgumentException("unsupported field type: " + field.getClass().getName());
+    }
+
+    /**
+     * Appends the type and value ints of a typed field at {@code position} and returns the next position.
+     */
+    static int writeTyped(IdentityField field, int[] data, int position) {
+        if (field instanceof LongField number) {
+            data[position++] = TYPE_LONG;
+            return writeLong(number.getLongValue(), data, position);
+        }
+        final UuidField uuid = (UuidField) field;
+        data[position++] = TYPE_UUID;
+        position = writeLong(uuid.getMostSignificantBits(), data, position);
+        return writeLong(uuid.getLeastSignificantBits(), data, position);
+    }
+
+    /**
+     * Builds a typed field from the type and value ints following its field word.
+     */
+    static IdentityField typedField(String name, int type, int[] value) {
+        return switch (type) {
+            case TYPE_LONG -> new LongField(name, readLong(value, 0));
+            case TYPE_UUID -> new UuidField(name, readLong(value, 0), readLong(value, 2));
+            default -> throw new IllegalArgumentException("unknown field type: " + type);
+        };
+    }
+
+    private static int writeLong(long value, int[] data, int position) {
+        data[position] = (int) (value >>> Integer.SIZE);
+        data[position + 1] = (int) value;
+        return position + 2;
+    }
+
+    private static long readLong(int[] value, int offset) {
+        return (long) value[offset] << Integer.SIZE | (value[offset + 1] & 0xFFFFFFFFL);
+    }
+
+    static IdentityField field(int kind, String name, String value) {
+        return switch (kind) {
+            case KIND_VALUE -> new ValueField(name, value);
+            case KIND_WILDCARD -> new WildcardField(name);
+            case KIND_PREFIX -> new PrefixField(name, value);
+            default -> throw new IllegalArgumentException("unknown field kind: " + kind);
+        };
+    }
+}
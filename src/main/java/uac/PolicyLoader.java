@@ -0,0 +1,290 @@
+package uac;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Streams grants from a CSV or JSON-lines file into a {@link PermissionSnapshotStore}. Lines are read in
+ * chunks and parsed on worker threads; at most two chunks per worker are in flight, so the input side
+ * uses bounded memory however large the file is. Parsed chunks are merged in file order, which keeps each
+ * user's first permission the first one in the file. Equal grants are shared through a {@link PermissionInterner}.
+ */
+public final class PolicyLoader {
+
+    public enum Format {
+        CSV, JSON_LINES
+    }
+
+    private final Format format;
+    private final int chunkLines;
+    private final int parallelism;
+    private final Consumer<Progress> progressListener;
+    private final long progressIntervalNanos;
+    private final PermissionInterner interner;
+
+    private PolicyLoader(Builder builder) {
+        this.format = builder.format;
+        this.chunkLines = builder.chunkLines;
+        this.parallelism = builder.parallelism;
+        this.progressListener = builder.progressListener;
+        this.progressIntervalNanos = builder.progressInterval.toNanos();
+        this.interner = builder.interner;
+    }
+
+    public PermissionSnapshotStore load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    public PermissionSnapshotStore load(InputStream in) throws IOException {
+        final PermissionSnapshotStore store = new PermissionSnapshotStore();
+        loadInto(in, store);
+        return store;
+    }
+
+    /**
+     * Replaces everything in the store with the grants read from the stream, as one new version.
+     */
+    public long loadInto(InputStream in, PermissionSnapshotStore store) throws IOException {
+        final Map<String, Set<ResourcePermission>> permissionsByUser = read(in);
+        return store.update(update -> {
+            update.clear();
+            permissionsByUser.forEach((userName, permissionSet) ->
+                    update.putUnmodifiable(userName, Collections.unmodifiableSet(permissionSet)));
+        });
+    }
+
+    private Map<String, Set<ResourcePermission>> read(InputStream in) throws IOException {
+        final CountingInputStream counting = new CountingInputStream(in);
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8), 1 << 16);
+        final Merger merger = new Merger(counting);
+        final PermissionInterner shared = interner != null ? interner : new PermissionInterner();
+        final Deque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(parallelism)) {
+            try {
+                List<String> chunk = new ArrayList<>(chunkLines);
+                long chunkStart = 1;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    chunk.add(line);
+                    if (chunk.size() == chunkLines) {
+                        pending.add(submit(executor, chunk, chunkStart, shared));
+                        chunkStart += chunk.size();
+                        chunk = new ArrayList<>(chunkLines);
+                        while (pending.size() >= 2 * parallelism) {
+                            merger.merge(pending.poll());
+                        }
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    pending.add(submit(executor, chunk, chunkStart, shared));
+                }
+                while (!pending.isEmpty()) {
+                    merger.merge(pending.poll());
+                }
+            } finally {
+                pending.forEach(future -> future.cancel(true));
+            }
+        }
+        merger.report();
+        return merger.permissionsByUser;
+    }
+
+    private Future<ParsedChunk> submit(ExecutorService executor, List<String> lines, long firstLine,
+                                       PermissionInterner shared) {
+        return executor.submit(() -> {
+            final List<GrantLineParser.Grant> grants = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                final String line = lines.get(i).strip();
+                if (line.isEmpty() || line.startsWith("#") || isCsvHeader(line, firstLine + i)) {
+                    continue;
+                }
+                final GrantLineParser.Grant grant;
+                try {
+                    grant = format == Format.CSV ? GrantLineParser.parseCsv(line) : GrantLineParser.parseJson(line);
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("line " + (firstLine + i) + ": " + ex.getMessage(), ex);
+                }
+                grants.add(new GrantLineParser.Grant(grant.userName(), shared.permission(grant.permission())));
+            }
+            return new ParsedChunk(grants, lines.size());
+        });
+    }
+
+    private boolean isCsvHeader(String line, long lineNumber) {
+        return format == Format.CSV && lineNumber == 1 && line.regionMatches(true, 0, "user,level", 0, 10);
+    }
+
+    /**
+     * The grants parsed from one chunk, with interned permissions, and the number of lines the chunk covered.
+     */
+    private record ParsedChunk(List<GrantLineParser.Grant> grants, long lineCount) {
+    }
+
+    public record Progress(long lines, long bytes, long permissions, int users, Duration elapsed) {
+
+        public double linesPerSecond() {
+            return perSecond(lines);
+        }
+
+        public double bytesPerSecond() {
+            return perSecond(bytes);
+        }
+
+        private double perSecond(long count) {
+            final long nanos = elapsed.toNanos();
+            return nanos == 0 ? 0.0 : count * 1e9 / nanos;
+        }
+    }
+
+    private final class Merger {
+        private final CountingInputStream counting;
+        private final Map<String, Set<ResourcePermission>> permissionsByUser = new HashMap<>();
+        private final long start = System.nanoTime();
+        private long lastReport = start;
+        private long lines;
+        private long permissions;
+
+        private Merger(CountingInputStream counting) {
+            this.counting = counting;
+        }
+
+        private void merge(Future<ParsedChunk> pending) throws IOException {
+            final ParsedChunk chunk;
+            try {
+                chunk = pending.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("policy load interrupted");
+            } catch (ExecutionException ex) {
+                throw new IOException(ex.getCause().getMessage(), ex.getCause());
+            }
+            for (GrantLineParser.Grant grant : chunk.grants()) {
+                if (permissionsByUser.computeIfAbsent(grant.userName(), key -> new LinkedHashSet<>())
+                        .add(grant.permission())) {
+                    permissions++;
+                }
+            }
+            lines += chunk.lineCount();
+            if (progressListener != null && System.nanoTime() - lastReport >= progressIntervalNanos) {
+                report();
+            }
+        }
+
+        private void report() {
+            if (progressListener != null) {
+                lastReport = System.nanoTime();
+                progressListener.accept(new Progress(lines, counting.count, permissions, permissionsByUser.size(),
+                        Duration.ofNanos(lastReport - start)));
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    public static class Builder {
+
+        private final Format format;
+        private int chunkLines = 4096;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private Consumer<Progress> progressListener;
+        private Duration progressInterval = Duration.ofSeconds(1);
+        private PermissionInterner interner;
+
+        public Builder(Format format) {
+            this.format = format;
+        }
+
+        public Builder chunkLines(int chunkLines) {
+            this.chunkLines = chunkLines;
+            return this;
+        }
+
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder progressListener(Consumer<Progress> progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public Builder progressInterval(Duration progressInterval) {
+            this.progressInterval = progressInterval;
+            return this;
+        }
+
+        /**
+         * Shares grants with other loads through the interner; by default each load interns on its own.
+         */
+        public Builder interner(PermissionInterner interner) {
+            this.interner = interner;
+            return this;
+        }
+
+        public PolicyLoader build() {
+            if (format == null) {
+                throw new IllegalArgumentException("format is required");
+            }
+            if (chunkLines < 1) {
+                throw new IllegalArgumentException("chunkLines must be positive");
+            }
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive");
+            }
+            if (progressInterval.isNegative()) {
+                throw new IllegalArgumentException("progressInterval must not be negative");
+            }
+            return new PolicyLoader(this);
+        }
+    }
+}
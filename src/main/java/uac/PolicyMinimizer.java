@@ -0,0 +1,415 @@
+package uac;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Removes grants that cannot change any decision: duplicates of an identity granted at a stronger level, and
+ * grants whose removal leaves {@code getLevel} the same for every identity. The first permission is always
+ * kept, since its fields complete lookup identities.
+ * <p>
+ * A grant is checked against one representative identity per class of identities it matches. Two identities
+ * fall in the same class when, field by field, they equal the same granted field (or none) and lie below the
+ * same deepest granted prefix, because then every permission scores them alike. Only the grant's competitors,
+ * the grants that can match an identity together with it, are scored and only their fields make classes.
+ * A grant matching more classes than {@code maxClasses} is kept unchecked.
+ */
+public final class PolicyMinimizer {
+
+    private static final int DEFAULT_MAX_CLASSES = 4096;
+    private static final String UNSEEN = "\u0000";
+
+    private final int maxClasses;
+
+    public PolicyMinimizer() {
+        this.maxClasses = DEFAULT_MAX_CLASSES;
+    }
+
+    private PolicyMinimizer(Builder builder) {
+        this.maxClasses = builder.maxClasses;
+    }
+
+    public enum Reason {
+        /** The same identity is granted at a level that takes precedence. */
+        DUPLICATE,
+        /** The grant can tie for the best match, but always with a grant deciding the same level. */
+        SHADOWED,
+        /** Some other grant always scores higher wherever this one matches. */
+        NEVER_WINS
+    }
+
+    public record Removal(ResourcePermission permission, Reason reason) {
+    }
+
+    /**
+     * The minimized set in the original order, the grants removed from it, and the grants kept because they
+     * match too many identity classes to check.
+     */
+    public record Result(Set<ResourcePermission> permissionSet, List<Removal> removed,
+                         List<ResourcePermission> unchecked) {
+    }
+
+    public Result minimize(Set<ResourcePermission> permissionSet) {
+        if (permissionSet == null || permissionSet.size() < 2) {
+            return new Result(permissionSet == null ? Set.of() : permissionSet, List.of(), List.of());
+        }
+        final List<ResourcePermission> working = new ArrayList<>(permissionSet);
+        final List<Removal> removed = new ArrayList<>();
+        final List<ResourcePermission> unchecked = new ArrayList<>();
+
+        removeDuplicates(working, removed);
+        final ResourceIdentity pattern = working.getFirst().getIdentity();
+        // A removal can make another grant redundant, so passes repeat until one removes nothing.
+        int before;
+        do {
+            before = working.size();
+            unchecked.clear();
+            final Competitors competitors = new Competitors(working, pattern);
+            for (int i = working.size() - 1; i > 0; i--) {
+                final ResourcePermission candidate = working.get(i);
+                final Verdict verdict = check(candidate, competitors.of(candidate), pattern);
+                switch (verdict) {
+                    case KEEP -> {
+                    }
+                    case UNCHECKED -> unchecked.add(candidate);
+                    case SHADOWED, NEVER_WINS -> {
+                        competitors.remove(working.remove(i));
+                        removed.add(new Removal(candidate,
+                                verdict == Verdict.SHADOWED ? Reason.SHADOWED : Reason.NEVER_WINS));
+                    }
+                }
+            }
+        } while (working.size() < before);
+        Collections.reverse(unchecked);
+        if (removed.isEmpty()) {
+            return new Result(permissionSet, List.of(), List.copyOf(unchecked));
+        }
+        return new Result(Collections.unmodifiableSet(new LinkedHashSet<>(working)), List.copyOf(removed),
+                List.copyOf(unchecked));
+    }
+
+    /**
+     * Tells whether granting the permission on top of the set would change no decision.
+     */
+    public boolean isRedundant(Set<ResourcePermission> permissionSet, ResourcePermission permission) {
+        if (permissionSet.contains(permission)) {
+            return true;
+        } else if (permissionSet.isEmpty()) {
+            return false;
+        }
+        final List<ResourcePermission> working = new ArrayList<>(permissionSet);
+        working.add(permission);
+        for (ResourcePermission existing : permissionSet) {
+            if (existing.getIdentity().equals(permission.getIdentity())
+                    && precedence(existing.getAccessLevel()) > precedence(permission.getAccessLevel())) {
+                return true;
+            }
+        }
+        final ResourceIdentity pattern = working.getFirst().getIdentity();
+        final Verdict verdict = check(permission, new Competitors(working, pattern).of(permission), pattern);
+        return verdict == Verdict.SHADOWED || verdict == Verdict.NEVER_WINS;
+    }
+
+    /**
+     * Minimizes every user of a live store. A user's redundant grants are revoked only if their set has not
+     * changed since it was minimized. Returns the results of the users whose sets shrank.
+     */
+    public Map<String, Result> compact(PermissionSnapshotStore store) {
+        final PermissionSnapshotStore.Snapshot snapshot = store.snapshot();
+        final Map<String, Result> compacted = new TreeMap<>();
+        for (String userName : snapshot.users()) {
+            final Set<ResourcePermission> permissionSet = snapshot.getPermissionSet(userName);
+            final Result result = minimize(permissionSet);
+            if (result.removed().isEmpty()) {
+                continue;
+            }
+            final List<ResourcePermission> revoked = result.removed().stream().map(Removal::permission).toList();
+            if (!store.apply(userName, List.of(), revoked, permissionSet).isEmpty()) {
+                compacted.put(userName, result);
+            }
+        }
+        return compacted;
+    }
+
+    private static void removeDuplicates(List<ResourcePermission> working, List<Removal> removed) {
+        // Among grants of one identity the strongest level decides every tie they take part in.
+        final Map<ResourceIdentity, ResourcePermission> strongest = new HashMap<>();
+        for (ResourcePermission permission : working) {
+            strongest.merge(permission.getIdentity(), permission, (a, b) ->
+                    precedence(b.getAccessLevel()) > precedence(a.getAccessLevel()) ? b : a);
+        }
+        for (int i = working.size() - 1; i > 0; i--) {
+            final ResourcePermission permission = working.get(i);
+            final ResourcePermission kept = strongest.get(permission.getIdentity());
+            if (kept != permission) {
+                removed.add(new Removal(working.remove(i), Reason.DUPLICATE));
+            }
+        }
+    }
+
+    private Verdict check(ResourcePermission candidate, List<ResourcePermission> rivals, ResourceIdentity pattern) {
+        final List<ResourcePermission> scored = new ArrayList<>(rivals);
+        scored.add(candidate);
+        final Classes classes = new Classes(scored);
+        final List<List<IdentityField>> choices = classes.matching(candidate.getIdentity(), pattern);
+        long count = 1;
+        for (List<IdentityField> choice : choices) {
+            count *= choice.size();
+            if (count > maxClasses) {
+                return Verdict.UNCHECKED;
+            }
+        }
+
+        boolean wins = false;
+        final int[] position = new int[choices.size()];
+        for (long c = 0; c < count; c++) {
+            final ResourceIdentity identity = classes.identity(choices, position);
+            next(choices, position);
+
+            final int score = UserAccessChecker.score(candidate.getIdentity(), identity, pattern);
+            if (score == 0) {
+                continue;
+            }
+            // Grants other than the rivals score zero wherever the candidate matches, so they cannot change this.
+            int without = 0;
+            for (ResourcePermission rival : rivals) {
+                without = LevelMask.merge(without, decision(rival, identity, pattern));
+            }
+            final int with = LevelMask.merge(without, score << LevelMask.BITS | LevelMask.of(candidate.getAccessLevel()));
+            if (LevelMask.decide(with) != LevelMask.decide(without)) {
+                return Verdict.KEEP;
+            }
+            wins |= LevelMask.score(with) == score;
+        }
+        return wins ? Verdict.SHADOWED : Verdict.NEVER_WINS;
+    }
+
+    private enum Verdict {
+        KEEP, UNCHECKED, SHADOWED, NEVER_WINS
+    }
+
+    private static int decision(ResourcePermission permission, ResourceIdentity identity, ResourceIdentity pattern) {
+        final int score = UserAccessChecker.score(permission.getIdentity(), identity, pattern);
+        return score << LevelMask.BITS | LevelMask.of(permission.getAccessLevel());
+    }
+
+    private static void next(List<List<IdentityField>> choices, int[] position) {
+        for (int i = 0; i < position.length; i++) {
+            if (++position[i] < choices.get(i).size()) {
+                return;
+            }
+            position[i] = 0;
+        }
+    }
+
+    private static int precedence(UserAccessLevel level) {
+        return level == null ? 0 : switch (level) {
+            case READ -> 1;
+            case WRITE -> 2;
+            case NONE -> 3;
+        };
+    }
+
+    /**
+     * Finds the grants that can match an identity together with a candidate. Two grants never do when some
+     * pattern field is granted by both with values no lookup field can match at once, since the lookup has that
+     * field or completes it as a wildcard. The candidate's most selective exact field narrows the search to the
+     * grants of that value and those whose field is absent, a wildcard or a prefix.
+     */
+    private static final class Competitors {
+        private final List<ResourcePermission> permissions;
+        private final Set<String> patternNames;
+        private final Map<String, Map<IdentityField, List<ResourcePermission>>> byValue = new HashMap<>();
+        private final Map<String, List<ResourcePermission>> open = new HashMap<>();
+        private final Set<ResourcePermission> removed = new HashSet<>();
+
+        Competitors(List<ResourcePermission> permissions, ResourceIdentity pattern) {
+            this.permissions = permissions;
+            this.patternNames = pattern.getFieldMap().keySet();
+            for (String name : patternNames) {
+                final Map<IdentityField, List<ResourcePermission>> values = new HashMap<>();
+                final List<ResourcePermission> others = new ArrayList<>();
+                for (ResourcePermission permission : permissions) {
+                    final IdentityField field = permission.getIdentity().getFieldMap().get(name);
+                    if (field != null && field.getType() == IdentityType.VALUE) {
+                        values.computeIfAbsent(field, k -> new ArrayList<>()).add(permission);
+                    } else {
+                        others.add(permission);
+                    }
+                }
+                byValue.put(name, values);
+                open.put(name, others);
+            }
+        }
+
+        void remove(ResourcePermission permission) {
+            removed.add(permission);
+        }
+
+        List<ResourcePermission> of(ResourcePermission candidate) {
+            final Map<String, IdentityField> fields = candidate.getIdentity().getFieldMap();
+            List<ResourcePermission> same = null;
+            List<ResourcePermission> others = permissions;
+            for (String name : patternNames) {
+                final IdentityField field = fields.get(name);
+                if (field == null || field.getType() != IdentityType.VALUE) {
+                    continue;
+                }
+                final List<ResourcePermission> values = byValue.get(name).getOrDefault(field, List.of());
+                if (same == null || values.size() + open.get(name).size() < same.size() + others.size()) {
+                    same = values;
+                    others = open.get(name);
+                }
+            }
+            final List<ResourcePermission> rivals = new ArrayList<>();
+            if (same != null) {
+                addRivals(candidate, same, rivals);
+            }
+            addRivals(candidate, others, rivals);
+            return rivals;
+        }
+
+        private void addRivals(ResourcePermission candidate, List<ResourcePermission> permissions,
+                               List<ResourcePermission> rivals) {
+            for (ResourcePermission permission : permissions) {
+                if (permission != candidate && !removed.contains(permission) && overlaps(candidate, permission)) {
+                    rivals.add(permission);
+                }
+            }
+        }
+
+        private boolean overlaps(ResourcePermission a, ResourcePermission b) {
+            final Map<String, IdentityField> fieldsA = a.getIdentity().getFieldMap();
+            final Map<String, IdentityField> fieldsB = b.getIdentity().getFieldMap();
+            for (String name : patternNames) {
+                final IdentityField fieldA = fieldsA.get(name);
+                final IdentityField fieldB = fieldsB.get(name);
+                if (fieldA != null && fieldB != null && !overlaps(fieldA, fieldB)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean overlaps(IdentityField a, IdentityField b) {
+            if (a.getType() == IdentityType.WILDCARD || b.getType() == IdentityType.WILDCARD) {
+                return true;
+            } else if (a instanceof PrefixField prefixA && b instanceof PrefixField prefixB) {
+                return prefixA.getPrefix().startsWith(prefixB.getPrefix())
+                        || prefixB.getPrefix().startsWith(prefixA.getPrefix());
+            } else if (a instanceof PrefixField) {
+                return UserAccessChecker.prefixMatches(a, b);
+            } else if (b instanceof PrefixField) {
+                return UserAccessChecker.prefixMatches(b, a);
+            }
+            return a.equals(b);
+        }
+    }
+
+    /**
+     * One representative lookup field per class, by field name; null stands for leaving the field out.
+     */
+    private static final class Classes {
+        private final Map<String, List<IdentityField>> representatives = new LinkedHashMap<>();
+
+        Classes(List<ResourcePermission> permissions) {
+            final Map<String, Set<IdentityField>> granted = new LinkedHashMap<>();
+            for (ResourcePermission permission : permissions) {
+                for (IdentityField field : permission.getIdentity().fields()) {
+                    granted.computeIfAbsent(field.getName(), k -> new LinkedHashSet<>()).add(field);
+                }
+            }
+            granted.forEach((name, fields) -> {
+                final List<IdentityField> options = new ArrayList<>();
+                options.add(null);
+                options.addAll(fields);
+                final WildcardField wildcard = new WildcardField(name);
+                if (!fields.contains(wildcard)) {
+                    options.add(wildcard);
+                }
+                // An ungranted value lies below one deepest granted prefix or below none.
+                final Set<String> values = new HashSet<>();
+                fields.forEach(field -> values.add(field.getValue()));
+                String unseen = UNSEEN;
+                while (values.contains(unseen)) {
+                    unseen += UNSEEN;
+                }
+                options.add(new ValueField(name, unseen));
+                for (IdentityField field : fields) {
+                    if (field instanceof PrefixField prefix) {
+                        options.add(new ValueField(name, prefix.getPrefix() + unseen));
+                    }
+                }
+                representatives.put(name, options);
+            });
+        }
+
+        /**
+         * Returns, per field name, the representatives the permission can match.
+         */
+        List<List<IdentityField>> matching(ResourceIdentity permission, ResourceIdentity pattern) {
+            final List<List<IdentityField>> choices = new ArrayList<>();
+            final Map<String, IdentityField> permissionFields = permission.getFieldMap();
+            final Map<String, IdentityField> patternFields = pattern.getFieldMap();
+            representatives.forEach((name, options) -> {
+                final IdentityField granted = permissionFields.get(name);
+                final List<IdentityField> matching = new ArrayList<>();
+                for (IdentityField option : options) {
+                    if (granted == null || matches(granted, option, patternFields.containsKey(name))) {
+                        matching.add(option);
+                    }
+                }
+                choices.add(matching);
+            });
+            return choices;
+        }
+
+        ResourceIdentity identity(List<List<IdentityField>> choices, int[] position) {
+            final List<IdentityField> fields = new ArrayList<>(position.length);
+            for (int i = 0; i < position.length; i++) {
+                final IdentityField field = choices.get(i).get(position[i]);
+                if (field != null) {
+                    fields.add(field);
+                }
+            }
+            return new ResourceIdentity(fields.toArray(new IdentityField[0]));
+        }
+
+        private static boolean matches(IdentityField granted, IdentityField option, boolean inPattern) {
+            if (option == null) {
+                // A missing field is ignored unless the pattern completes it as a wildcard.
+                return !inPattern || granted.getType() == IdentityType.WILDCARD;
+            }
+            return granted.equals(option) || granted.getType() == IdentityType.WILDCARD
+                    || granted instanceof PrefixField && UserAccessChecker.prefixMatches(granted, option);
+        }
+    }
+
+    public static class Builder {
+
+        private int maxClasses = DEFAULT_MAX_CLASSES;
+
+        /**
+         * Sets how many identity classes a grant may match and still be checked.
+         */
+        public Builder maxClasses(int maxClasses) {
+            if (maxClasses < 1) {
+                throw new IllegalArgumentException("maxClasses must be positive");
+            }
+            this.maxClasses = maxClasses;
+            return this;
+        }
+
+        public PolicyMinimizer build() {
+            return new PolicyMinimizer(this);
+        }
+    }
+}
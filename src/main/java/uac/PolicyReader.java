@@ -0,0 +1,180 @@
+package uac;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a policy written by {@link PolicyWriter} in one sequential pass. Field objects and identities
+ * repeated across permissions and users are decoded once and shared.
+ */
+public final class PolicyReader {
+
+    private static final int CHUNK_INTS = 1 << 14;
+
+    private PolicyReader() {
+    }
+
+    public static PermissionSnapshotStore read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public static PermissionSnapshotStore read(InputStream in) throws IOException {
+        final Map<String, Set<ResourcePermission>> permissionsByUser = readPermissions(in);
+        final PermissionSnapshotStore store = new PermissionSnapshotStore();
+        store.update(update -> permissionsByUser.forEach(update::putUnmodifiable));
+        return store;
+    }
+
+    public static Map<String, Set<ResourcePermission>> readPermissions(InputStream in) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (input.readInt() != PolicyFormat.MAGIC) {
+            throw new IOException("not a binary policy file");
+        }
+        final int formatVersion = input.readInt();
+        if (!PolicyFormat.isSupported(formatVersion)) {
+            throw new IOException("unsupported policy format version " + formatVersion);
+        }
+        final int stringCount = input.readInt();
+        final int userCount = input.readInt();
+        final int dataLength = input.readInt();
+
+        final int[] offsets = readInts(input, stringCount + 1);
+        final byte[] blob = new byte[offsets[stringCount]];
+        input.readFully(blob);
+        final String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = new String(blob, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        final int[] users = readInts(input, userCount * PolicyFormat.USER_ENTRY_INTS);
+        final int[] data = readInts(input, dataLength);
+
+        final Decoder decoder = new Decoder(strings, data);
+        final Map<String, Set<ResourcePermission>> permissionsByUser = HashMap.newHashMap(userCount);
+        for (int u = 0; u < userCount; u++) {
+            final int entry = u * PolicyFormat.USER_ENTRY_INTS;
+            permissionsByUser.put(strings[users[entry]], decoder.permissions(users[entry + 1], users[entry + 2]));
+        }
+        return permissionsByUser;
+    }
+
+    private static int[] readInts(DataInputStream input, int count) throws IOException {
+        final int[] values = new int[count];
+        final byte[] chunk = new byte[Math.min(count, CHUNK_INTS) * Integer.BYTES];
+        final IntBuffer ints = ByteBuffer.wrap(chunk).asIntBuffer();
+        for (int read = 0; read < count; ) {
+            final int n = Math.min(count - read, CHUNK_INTS);
+            input.readFully(chunk, 0, n * Integer.BYTES);
+            ints.get(0, values, read, n);
+            read += n;
+        }
+        return values;
+    }
+
+    /**
+     * Decodes permission records from the data section, sharing equal fields and identities.
+     */
+    static final class Decoder {
+        private final String[] strings;
+        private final int[] data;
+        private final Map<Long, IdentityField> fields = new HashMap<>();
+        private final Map<IdentityKey, SharedIdentity> identities = new HashMap<>();
+
+        Decoder(String[] strings, int[] data) {
+            this.strings = strings;
+            this.data = data;
+        }
+
+        Set<ResourcePermission> permissions(int offset, int count) {
+            final Set<ResourcePermission> permissionSet = LinkedHashSet.newLinkedHashSet(count);
+            int position = offset;
+            for (int p = 0; p < count; p++) {
+                final int header = data[position];
+                final int fieldCount = PolicyFormat.fieldCountOf(header);
+                int end = position + 1;
+                for (int f = 0; f < fieldCount; f++) {
+                    final int kind = PolicyFormat.kindOf(data[end]);
+                    end += 1 + PolicyFormat.valueInts(kind, kind == PolicyFormat.KIND_TYPED ? data[end + 1] : 0);
+                }
+                permissionSet.add(permission(position + 1, end, fieldCount, header));
+                position = end;
+            }
+            return Collections.unmodifiableSet(permissionSet);
+        }
+
+        private ResourcePermission permission(int from, int to, int fieldCount, int header) {
+            // Equal grants of different users share one permission, one per level of each identity.
+            final IdentityKey key = new IdentityKey(Arrays.copyOfRange(data, from, to));
+            SharedIdentity shared = identities.get(key);
+            if (shared == null) {
+                final IdentityField[] identityFields = new IdentityField[fieldCount];
+                int position = from;
+                for (int f = 0; f < fieldCount; f++) {
+                    final int word = data[position++];
+                    if (PolicyFormat.kindOf(word) == PolicyFormat.KIND_TYPED) {
+                        final int type = data[position++];
+                        final int[] value = Arrays.copyOfRange(data, position, position + PolicyFormat.typedInts(type));
+                        position += value.length;
+                        identityFields[f] = PolicyFormat.typedField(strings[PolicyFormat.nameOf(word)], type, value);
+                        continue;
+                    }
+                    final int valueId = PolicyFormat.hasValue(PolicyFormat.kindOf(word)) ? data[position++] : PolicyFormat.NO_STRING;
+                    identityFields[f] = field(word, valueId);
+                }
+                shared = new SharedIdentity(new ResourceIdentity(identityFields),
+                        new ResourcePermission[1 << PolicyFormat.LEVEL_BITS]);
+                identities.put(key, shared);
+            }
+            final int levelCode = header & ((1 << PolicyFormat.LEVEL_BITS) - 1);
+            ResourcePermission permission = shared.permissions[levelCode];
+            if (permission == null) {
+                permission = new ResourcePermission(shared.identity, PolicyFormat.levelOf(header));
+                shared.permissions[levelCode] = permission;
+            }
+            return permission;
+        }
+
+        private IdentityField field(int word, int valueId) {
+            return fields.computeIfAbsent((long) word << Integer.SIZE | (valueId & 0xFFFFFFFFL), k -> {
+                final String name = strings[PolicyFormat.nameOf(word)];
+                final String value = valueId == PolicyFormat.NO_STRING ? null : strings[valueId];
+                return PolicyFormat.field(PolicyFormat.kindOf(word), name, value);
+            });
+        }
+    }
+
+    private record SharedIdentity(ResourceIdentity identity, ResourcePermission[] permissions) {
+    }
+
+    private record IdentityKey(int[] words) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey that && Arrays.equals(words, that.words);
+        }
+
+        @Override
+        public int hashCode() {
+            // Ids are small and dense, so a plain polynomial hash of them clusters badly.
+            int h = words.length;
+            for (int word : words) {
+                h = (h ^ word) * 0x9E3779B9;
+            }
+            return h ^ (h >>> 15);
+        }
+    }
+}
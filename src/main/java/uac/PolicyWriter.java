@@ -0,0 +1,108 @@
+package uac;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes permission sets in the binary layout described by {@link PolicyFormat}.
+ */
+public final class PolicyWriter {
+
+    private PolicyWriter() {
+    }
+
+    public static void write(Map<String, Set<ResourcePermission>> permissionsByUser, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(permissionsByUser, out);
+        }
+    }
+
+    public static void write(Map<String, Set<ResourcePermission>> permissionsByUser, OutputStream out)
+            throws IOException {
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+        final String[] userNames = permissionsByUser.keySet().toArray(new String[0]);
+        Arrays.sort(userNames, PolicyFormat.NAME_ORDER);
+
+        final int[] users = new int[userNames.length * PolicyFormat.USER_ENTRY_INTS];
+        int[] data = new int[1024];
+        int length = 0;
+        for (int u = 0; u < userNames.length; u++) {
+            final Set<ResourcePermission> permissionSet = permissionsByUser.get(userNames[u]);
+            users[u * PolicyFormat.USER_ENTRY_INTS] = id(userNames[u], ids, strings);
+            users[u * PolicyFormat.USER_ENTRY_INTS + 1] = length;
+            users[u * PolicyFormat.USER_ENTRY_INTS + 2] = permissionSet == null ? 0 : permissionSet.size();
+            if (permissionSet == null) {
+                continue;
+            }
+            for (ResourcePermission permission : permissionSet) {
+                if (permission.getIdentity() == null) {
+                    throw new IllegalArgumentException("permission without identity for user " + userNames[u]);
+                }
+                final IdentityField[] fields = permission.getIdentity().fields();
+                // A field takes at most six ints: its word, a type and a UUID.
+                if (data.length < length + 1 + 6 * fields.length) {
+                    data = Arrays.copyOf(data, Math.max(data.length * 2, length + 1 + 6 * fields.length));
+                }
+                data[length++] = fields.length << PolicyFormat.LEVEL_BITS
+                        | PolicyFormat.levelCode(permission.getAccessLevel());
+                for (IdentityField field : fields) {
+                    final int kind = PolicyFormat.kind(field);
+                    data[length++] = id(field.getName(), ids, strings) << PolicyFormat.KIND_BITS | kind;
+                    if (kind == PolicyFormat.KIND_TYPED) {
+                        length = PolicyFormat.writeTyped(field, data, length);
+                    } else if (PolicyFormat.hasValue(kind)) {
+                        data[length++] = field.getValue() == null ? PolicyFormat.NO_STRING : id(field.getValue(), ids, strings);
+                    }
+                }
+            }
+        }
+
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        output.writeInt(PolicyFormat.MAGIC);
+        output.writeInt(PolicyFormat.FORMAT_VERSION);
+        output.writeInt(strings.size());
+        output.writeInt(userNames.length);
+        output.writeInt(length);
+
+        final byte[][] encoded = new byte[strings.size()][];
+        int offset = 0;
+        output.writeInt(offset);
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            offset += encoded[i].length;
+            output.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            output.write(bytes);
+        }
+        for (int value : users) {
+            output.writeInt(value);
+        }
+        for (int i = 0; i < length; i++) {
+            output.writeInt(data[i]);
+        }
+        output.flush();
+    }
+
+    private static int id(String value, Map<String, Integer> ids, List<String> strings) {
+        if (value == null) {
+            throw new IllegalArgumentException("user and field names must not be null");
+        }
+        return ids.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+}
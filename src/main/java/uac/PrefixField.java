@@ -0,0 +1,68 @@
+package uac;
+
+/**
+ * Matches every value below a path prefix, written {@code config/**}: {@code config/payment.yml} and
+ * {@code config/eu/payment.yml} match, {@code config} itself does not. It is more specific than a wildcard and
+ * less specific than an exact value, and a deeper prefix is more specific than a shallower one.
+ */
+public class PrefixField extends IdentityField {
+
+    static final String SUFFIX = "/**";
+
+    private final String prefix;
+    private final String[] segments;
+
+    /**
+     * Accepts the prefix as {@code config}, {@code config/} or {@code config/**}, with at most 255 segments.
+     */
+    public PrefixField(String name, String prefix) {
+        super(name, path(prefix) + SUFFIX);
+        this.prefix = path(prefix) + "/";
+        this.segments = path(prefix).split("/", -1);
+        if (segments.length > LevelMask.MAX_PREFIX_DEPTH) {
+            throw new IllegalArgumentException("a prefix may have at most " + LevelMask.MAX_PREFIX_DEPTH + " segments");
+        }
+    }
+
+    @Override
+    public IdentityType getType() {
+        return IdentityType.PREFIX;
+    }
+
+    /**
+     * Returns the prefix a matching value starts with, including the trailing slash.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public boolean matches(String value) {
+        return value != null && value.length() > prefix.length() && value.startsWith(prefix);
+    }
+
+    /**
+     * Returns whether a lookup field can fall under a prefix. Numbers and UUIDs never contain a slash, so they
+     * are skipped without being formatted.
+     */
+    static boolean canMatch(IdentityField field) {
+        return field.getType() == IdentityType.VALUE && !(field instanceof LongField) && !(field instanceof UuidField);
+    }
+
+    String[] segments() {
+        return segments;
+    }
+
+    private static String path(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix is required");
+        }
+        String path = prefix.endsWith(SUFFIX) ? prefix.substring(0, prefix.length() - SUFFIX.length()) : prefix;
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("an empty prefix matches everything; use a WildcardField");
+        }
+        return path;
+    }
+}
@@ -0,0 +1,51 @@
+package uac;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Radix tree over path segments, holding one target per {@link PrefixField} prefix. Finding the prefixes a
+ * value lies below walks the value's own segments, so it costs the same however many prefixes are stored.
+ */
+final class PrefixTrie<T> {
+
+    private final Map<String, PrefixTrie<T>> children = new HashMap<>();
+    private T target;
+
+    T computeIfAbsent(PrefixField field, Supplier<T> supplier) {
+        PrefixTrie<T> node = this;
+        for (String segment : field.segments()) {
+            node = node.children.computeIfAbsent(segment, s -> new PrefixTrie<>());
+        }
+        if (node.target == null) {
+            node.target = supplier.get();
+        }
+        return node.target;
+    }
+
+    PrefixTrie<T> child(String segment) {
+        return children.get(segment);
+    }
+
+    T target() {
+        return target;
+    }
+
+    /**
+     * Returns the target of the deepest prefix the value lies below, or null.
+     */
+    T deepest(String value) {
+        T deepest = null;
+        PrefixTrie<T> node = this;
+        int start = 0;
+        int slash;
+        while ((slash = value.indexOf('/', start)) >= 0 && (node = node.child(value.substring(start, slash))) != null) {
+            start = slash + 1;
+            if (node.target != null && start < value.length()) {
+                deepest = node.target;
+            }
+        }
+        return deepest;
+    }
+}
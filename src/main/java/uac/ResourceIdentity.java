@@ -8,31 +8,98 @@ import java.util.Map;
 public class ResourceIdentity {
 
     private final Map<String, IdentityField> fieldMap;
+    private final IdentityField[] fields;
+    private IdentitySymbols symbols;
+    private int hash;
 
-    private ResourceIdentity(List<IdentityField> fields) {
+    ResourceIdentity(List<IdentityField> fields) {
         Map<String, IdentityField> fieldsByName = LinkedHashMap.newLinkedHashMap(fields.size());
         for (IdentityField f : fields) {
             fieldsByName.put(f.getName(), f);
         }
         this.fieldMap = Map.copyOf(fieldsByName);
+        this.fields = checkWidth(fieldsByName.values().toArray(new IdentityField[0]));
     }
 
     public Map<String, IdentityField> getFieldMap() {
         return fieldMap;
     }
 
+    /**
+     * Creates an identity from fields with distinct names, skipping the merge of repeated names.
+     */
+    ResourceIdentity(IdentityField[] fields) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map.Entry<String, IdentityField>[] entries = new Map.Entry[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            entries[i] = Map.entry(fields[i].getName(), fields[i]);
+        }
+        this.fieldMap = Map.ofEntries(entries);
+        this.fields = checkWidth(fields);
+    }
+
+    /**
+     * Rejects identities whose scores would not fit the packed decision; see {@link LevelMask}.
+     */
+    private static IdentityField[] checkWidth(IdentityField[] fields) {
+        if (fields.length > LevelMask.MAX_FIELDS) {
+            throw new IllegalArgumentException("an identity may have at most " + LevelMask.MAX_FIELDS + " fields");
+        }
+        if (fields.length > LevelMask.MAX_PREFIX_FIELDS) {
+            int prefixes = 0;
+            for (IdentityField field : fields) {
+                if (field instanceof PrefixField) {
+                    prefixes++;
+                }
+            }
+            if (prefixes > LevelMask.MAX_PREFIX_FIELDS) {
+                throw new IllegalArgumentException(
+                        "an identity may have at most " + LevelMask.MAX_PREFIX_FIELDS + " prefix fields");
+            }
+        }
+        return fields;
+    }
+
+    IdentityField[] fields() {
+        return fields;
+    }
+
+    IdentitySymbols internSymbols(SymbolTable table) {
+        IdentitySymbols s = symbols;
+        if (s == null || !s.isInterned(table)) {
+            s = IdentitySymbols.intern(fields, table);
+            symbols = s;
+        }
+        return s;
+    }
+
+    IdentitySymbols lookupSymbols(SymbolTable table) {
+        IdentitySymbols s = symbols;
+        if (s == null || !s.isCurrent(table)) {
+            s = IdentitySymbols.resolve(fields, table);
+            symbols = s;
+        }
+        return s;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
         ResourceIdentity that = (ResourceIdentity) o;
-        return fieldMap.equals(that.fieldMap);
+        return hashCode() == that.hashCode() && fieldMap.equals(that.fieldMap);
     }
 
     @Override
     public int hashCode() {
-        return fieldMap.hashCode();
+        // Immutable, so computed once; a racing recompute yields the same value.
+        int h = hash;
+        if (h == 0) {
+            h = fieldMap.hashCode();
+            hash = h;
+        }
+        return h;
     }
 
     public static class Builder {
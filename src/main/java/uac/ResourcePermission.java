@@ -3,6 +3,7 @@ package uac;
 public class ResourcePermission {
     private final ResourceIdentity identity;
     private final UserAccessLevel accessLevel;
+    private int hash;
 
     public ResourcePermission(ResourceIdentity identity, UserAccessLevel accessLevel) {
         this.identity = identity;
@@ -21,8 +22,12 @@ public class ResourcePermission {
 
     @Override
     public int hashCode() {
-        int result = identity != null ? identity.hashCode() : 0;
-        result = 31 * result + (accessLevel != null ? accessLevel.hashCode() : 0);
+        int result = hash;
+        if (result == 0) {
+            result = identity != null ? identity.hashCode() : 0;
+            result = 31 * result + (accessLevel != null ? accessLevel.hashCode() : 0);
+            hash = result;
+        }
         return result;
     }
 
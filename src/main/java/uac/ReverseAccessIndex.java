@@ -0,0 +1,185 @@
+package uac;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers which users hold at least a given level on an identity. Posting lists narrow the users down to
+ * those with a permission that can score above zero, and only those candidates are resolved. A candidate
+ * must pass every field of the identity: hold its value, hold a wildcard or prefix for it, or have a
+ * permission that leaves the field out.
+ */
+public final class ReverseAccessIndex {
+
+    private final Map<String, Entry> indexes = new ConcurrentHashMap<>();
+    private final Map<IdentityField, Set<String>> fieldPostings = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> wildcardPostings = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> patternPostings = new ConcurrentHashMap<>();
+    private final Map<UserAccessLevel, Set<String>> levelPostings = new ConcurrentHashMap<>();
+
+    public static ReverseAccessIndex of(Map<String, Set<ResourcePermission>> permissionsByUser) {
+        ReverseAccessIndex index = new ReverseAccessIndex();
+        permissionsByUser.forEach(index::put);
+        return index;
+    }
+
+    public synchronized void put(String userName, Set<ResourcePermission> permissionSet) {
+        final Entry previous = indexes.get(userName);
+        final PermissionIndex current = PermissionIndex.of(permissionSet);
+
+        // Postings only ever over-approximate, so readers racing with an update still find every holder.
+        // The names a user's permissions all hold exclude candidates, so they are swapped in with the index.
+        final Postings added = Postings.of(current.getPermissionSet());
+        added.addTo(this, userName);
+        indexes.put(userName, new Entry(current, constrainedNames(current.getPermissionSet())));
+        if (previous != null) {
+            Postings removed = Postings.of(previous.index.getPermissionSet());
+            removed.removeAll(added);
+            removed.removeFrom(this, userName);
+        }
+    }
+
+    public synchronized void remove(String userName) {
+        final Entry previous = indexes.remove(userName);
+        if (previous != null) {
+            Postings.of(previous.index.getPermissionSet()).removeFrom(this, userName);
+        }
+    }
+
+    public Set<String> getUsers(ResourceIdentity identity, UserAccessLevel minimumLevel) {
+        if (minimumLevel == UserAccessLevel.NONE) {
+            return Collections.unmodifiableSet(new TreeSet<>(indexes.keySet()));
+        }
+
+        final Set<String> candidates = new HashSet<>();
+        final Map<String, IdentityField> fieldMap = identity.getFieldMap();
+        final IdentityField[] fields = fieldMap.values().toArray(new IdentityField[0]);
+        final List<Set<String>> exact = new ArrayList<>(fields.length);
+        final List<Set<String>> open = new ArrayList<>(fields.length);
+        for (IdentityField field : fields) {
+            exact.add(fieldPostings.getOrDefault(field, Set.of()));
+            open.add(wildcardPostings.getOrDefault(field.getName(), Set.of()));
+            candidates.addAll(exact.getLast());
+            candidates.addAll(open.getLast());
+        }
+        // A missing field only scores for users whose pattern completes it as a wildcard.
+        for (Map.Entry<String, Set<String>> entry : wildcardPostings.entrySet()) {
+            if (!fieldMap.containsKey(entry.getKey())) {
+                Set<String> completing = new HashSet<>(entry.getValue());
+                completing.retainAll(patternPostings.getOrDefault(entry.getKey(), Set.of()));
+                candidates.addAll(completing);
+            }
+        }
+
+        final Set<String> writers = levelPostings.getOrDefault(UserAccessLevel.WRITE, Set.of());
+        final Set<String> readers = levelPostings.getOrDefault(UserAccessLevel.READ, Set.of());
+        final Set<String> holders = new TreeSet<>();
+        for (String userName : candidates) {
+            if (!writers.contains(userName) && (minimumLevel == UserAccessLevel.WRITE || !readers.contains(userName))) {
+                continue; // Holds no grant that could resolve to the requested level.
+            }
+            final Entry entry = indexes.get(userName);
+            if (entry != null && matchesEveryField(userName, entry, fields, exact, open)
+                    && entry.index.getLevel(identity).compareTo(minimumLevel) >= 0) {
+                holders.add(userName);
+            }
+        }
+        return Collections.unmodifiableSet(holders);
+    }
+
+    /**
+     * Intersects the per-field postings: a user whose every permission holds another value for some field of
+     * the identity scores zero on it and is skipped without being resolved.
+     */
+    private static boolean matchesEveryField(String userName, Entry entry, IdentityField[] fields,
+                                             List<Set<String>> exact, List<Set<String>> open) {
+        for (int i = 0; i < fields.length; i++) {
+            if (entry.constrainedNames.contains(fields[i].getName()) && !exact.get(i).contains(userName)
+                    && !open.get(i).contains(userName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> constrainedNames(Set<ResourcePermission> permissionSet) {
+        Set<String> names = null;
+        for (ResourcePermission permission : permissionSet) {
+            if (names == null) {
+                names = new HashSet<>(permission.getIdentity().getFieldMap().keySet());
+            } else {
+                names.retainAll(permission.getIdentity().getFieldMap().keySet());
+            }
+            if (names.isEmpty()) {
+                break;
+            }
+        }
+        return names == null || names.isEmpty() ? Set.of() : Set.copyOf(names);
+    }
+
+    private record Entry(PermissionIndex index, Set<String> constrainedNames) {
+    }
+
+    private static <K> Set<String> users(Map<K, Set<String>> postings, K key) {
+        return postings.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    private record Postings(Set<IdentityField> fields, Set<String> wildcardNames, Set<String> patternNames,
+                            Set<UserAccessLevel> levels) {
+
+        static Postings of(Set<ResourcePermission> permissionSet) {
+            Postings postings = new Postings(new HashSet<>(), new HashSet<>(), new HashSet<>(), new HashSet<>());
+            if (!permissionSet.isEmpty()) {
+                postings.patternNames.addAll(permissionSet.iterator().next().getIdentity().getFieldMap().keySet());
+            }
+            for (ResourcePermission permission : permissionSet) {
+                if (permission.getAccessLevel() != null) {
+                    postings.levels.add(permission.getAccessLevel());
+                }
+                for (IdentityField field : permission.getIdentity().getFieldMap().values()) {
+                    if (field.getType() != IdentityType.VALUE) {
+                        // Prefix fields are posted like wildcards; candidates only need to over-approximate.
+                        postings.wildcardNames.add(field.getName());
+                    } else {
+                        postings.fields.add(field);
+                    }
+                }
+            }
+            return postings;
+        }
+
+        void removeAll(Postings other) {
+            fields.removeAll(other.fields);
+            wildcardNames.removeAll(other.wildcardNames);
+            patternNames.removeAll(other.patternNames);
+            levels.removeAll(other.levels);
+        }
+
+        void addTo(ReverseAccessIndex index, String userName) {
+            fields.forEach(field -> users(index.fieldPostings, field).add(userName));
+            wildcardNames.forEach(name -> users(index.wildcardPostings, name).add(userName));
+            patternNames.forEach(name -> users(index.patternPostings, name).add(userName));
+            levels.forEach(level -> users(index.levelPostings, level).add(userName));
+        }
+
+        void removeFrom(ReverseAccessIndex index, String userName) {
+            fields.forEach(field -> removeUser(index.fieldPostings, field, userName));
+            wildcardNames.forEach(name -> removeUser(index.wildcardPostings, name, userName));
+            patternNames.forEach(name -> removeUser(index.patternPostings, name, userName));
+            levels.forEach(level -> removeUser(index.levelPostings, level, userName));
+        }
+
+        private static <K> void removeUser(Map<K, Set<String>> postings, K key, String userName) {
+            postings.computeIfPresent(key, (k, users) -> {
+                users.remove(userName);
+                return users.isEmpty() ? null : users;
+            });
+        }
+    }
+}
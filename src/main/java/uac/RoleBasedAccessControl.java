@@ -0,0 +1,179 @@
+package uac;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grants permissions through roles, which may inherit other roles, instead of copying them into every user.
+ * A user's effective set is their direct permissions followed by each assigned role's permissions, depth first
+ * through inherited roles, and resolves like any other permission set. Users with the same direct permissions,
+ * in the same order, and the same roles share one flattened set and one compiled index. Editing a role only touches the combinations
+ * that reach it, and their compiled indexes take the change as a delta where they can.
+ */
+public final class RoleBasedAccessControl implements IndexedUserAccessControl {
+
+    private final Map<String, Role> roles = new HashMap<>();
+    private final Map<Assignment, Combination> combinations = new HashMap<>();
+    private final Map<String, Combination> users = new ConcurrentHashMap<>();
+
+    /**
+     * Defines or replaces a role. Inherited roles need not exist yet; until they do they grant nothing.
+     */
+    public synchronized void putRole(String roleName, Set<ResourcePermission> permissionSet, List<String> inheritedRoles) {
+        final Role role = new Role(permissionSet == null || permissionSet.isEmpty() ? Set.of()
+                : Collections.unmodifiableSet(new LinkedHashSet<>(permissionSet)), List.copyOf(inheritedRoles));
+        for (String inherited : role.inheritedRoles) {
+            if (reaches(inherited, roleName, new HashSet<>())) {
+                throw new IllegalArgumentException("role " + roleName + " would inherit itself through " + inherited);
+            }
+        }
+        roles.put(roleName, role);
+        reflatten(roleName);
+    }
+
+    public synchronized void removeRole(String roleName) {
+        if (roles.remove(roleName) != null) {
+            reflatten(roleName);
+        }
+    }
+
+    public void assign(String userName, List<String> roleNames) {
+        assign(userName, Set.of(), roleNames);
+    }
+
+    public synchronized void assign(String userName, Set<ResourcePermission> permissionSet, List<String> roleNames) {
+        // Keyed by the ordered grants: sets equal in another order flatten to a different first permission.
+        final Assignment assignment = new Assignment(permissionSet == null ? List.of() : List.copyOf(permissionSet),
+                List.copyOf(roleNames));
+        final Combination combination = combinations.computeIfAbsent(assignment, this::flatten);
+        combination.members++;
+        release(users.put(userName, combination));
+    }
+
+    public synchronized void unassign(String userName) {
+        release(users.remove(userName));
+    }
+
+    @Override
+    public PermissionIndex getPermissionIndex(String userName) {
+        final Combination combination = users.get(userName);
+        return combination == null ? PermissionIndex.of(null) : combination.index();
+    }
+
+    public synchronized int combinationCount() {
+        return combinations.size();
+    }
+
+    private void release(Combination combination) {
+        if (combination != null && --combination.members == 0) {
+            combinations.remove(combination.assignment);
+        }
+    }
+
+    private void reflatten(String roleName) {
+        for (Combination combination : combinations.values()) {
+            if (combination.reachedRoles.contains(roleName)) {
+                final Combination updated = flatten(combination.assignment);
+                combination.reachedRoles = updated.reachedRoles;
+                combination.update(updated.compiled.permissionSet);
+            }
+        }
+    }
+
+    private Combination flatten(Assignment assignment) {
+        final Set<ResourcePermission> permissionSet = new LinkedHashSet<>(assignment.permissions);
+        final Set<String> reachedRoles = new HashSet<>();
+        for (String roleName : assignment.roleNames) {
+            collect(roleName, permissionSet, reachedRoles);
+        }
+        return new Combination(assignment, reachedRoles,
+                permissionSet.isEmpty() ? Set.of() : Collections.unmodifiableSet(permissionSet));
+    }
+
+    private void collect(String roleName, Set<ResourcePermission> permissionSet, Set<String> reachedRoles) {
+        if (!reachedRoles.add(roleName)) {
+            return;
+        }
+        final Role role = roles.get(roleName);
+        if (role != null) {
+            permissionSet.addAll(role.permissionSet);
+            for (String inherited : role.inheritedRoles) {
+                collect(inherited, permissionSet, reachedRoles);
+            }
+        }
+    }
+
+    private boolean reaches(String roleName, String target, Set<String> visited) {
+        if (roleName.equals(target)) {
+            return true;
+        }
+        final Role role = roles.get(roleName);
+        if (role == null || !visited.add(roleName)) {
+            return false;
+        }
+        for (String inherited : role.inheritedRoles) {
+            if (reaches(inherited, target, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Role(Set<ResourcePermission> permissionSet, List<String> inheritedRoles) {
+    }
+
+    private record Assignment(List<ResourcePermission> permissions, List<String> roleNames) {
+    }
+
+    private record Compiled(Set<ResourcePermission> permissionSet, PermissionIndex index) {
+    }
+
+    private static final class Combination {
+        private final Assignment assignment;
+        private Set<String> reachedRoles;
+        private int members;
+        private volatile Compiled compiled;
+
+        private Combination(Assignment assignment, Set<String> reachedRoles, Set<ResourcePermission> permissionSet) {
+            this.assignment = assignment;
+            this.reachedRoles = reachedRoles;
+            this.compiled = new Compiled(permissionSet, null);
+        }
+
+        private PermissionIndex index() {
+            final Compiled current = compiled;
+            if (current.index != null) {
+                return current.index;
+            }
+            final PermissionIndex index = PermissionIndex.of(current.permissionSet);
+            synchronized (this) {
+                // Kept only if no role edit replaced the set while compiling.
+                if (compiled == current) {
+                    compiled = new Compiled(current.permissionSet, index);
+                }
+            }
+            return index;
+        }
+
+        private synchronized void update(Set<ResourcePermission> permissionSet) {
+            final Compiled current = compiled;
+            if (current.index == null) {
+                compiled = new Compiled(permissionSet, null);
+                return;
+            }
+            final Set<ResourcePermission> granted = new LinkedHashSet<>(permissionSet);
+            granted.removeAll(current.permissionSet);
+            final Set<ResourcePermission> revoked = new LinkedHashSet<>(current.permissionSet);
+            revoked.removeAll(permissionSet);
+            final PermissionDelta delta = PermissionDelta.of(null, current.permissionSet, permissionSet,
+                    granted, revoked, 0);
+            compiled = new Compiled(permissionSet, current.index.withDelta(permissionSet, delta));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package uac;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces concurrent lookups of the same user into one in-flight load. Callers get their own copy of the
+ * shared future, so cancelling one caller's future does not cancel the load for the others.
+ */
+public final class SingleFlightUserAccessControl implements AsyncUserAccessControl {
+
+    private final AsyncUserAccessControl loader;
+    private final Map<String, CompletableFuture<Set<ResourcePermission>>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlightUserAccessControl(AsyncUserAccessControl loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public CompletableFuture<Set<ResourcePermission>> getPermissionSetAsync(String userName) {
+        final CompletableFuture<Set<ResourcePermission>> created = new CompletableFuture<>();
+        final CompletableFuture<Set<ResourcePermission>> existing = inFlight.putIfAbsent(userName, created);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        try {
+            loader.getPermissionSetAsync(userName).whenComplete((permissionSet, failure) -> {
+                inFlight.remove(userName, created);
+                if (failure != null) {
+                    created.completeExceptionally(failure);
+                } else {
+                    created.complete(permissionSet);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(userName, created);
+            created.completeExceptionally(ex);
+        }
+        return created.copy();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,127 @@
+package uac;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+final class SymbolTable {
+
+    static final int UNKNOWN = -1;
+    static final int WILDCARD_BIT = 1;
+    static final int PREFIX_BIT = 2;
+
+    static final int DEFAULT_MAX_FIELDS = 1 << 20;
+
+    private static final AtomicReference<SymbolTable> SHARED = new AtomicReference<>(new SymbolTable(DEFAULT_MAX_FIELDS));
+
+    private final Map<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private final Map<IdentityField, Integer> fieldIds = new ConcurrentHashMap<>();
+    private final int maxFields;
+    private volatile int[] wildcardCodes = new int[16];
+    private volatile int generation;
+    private volatile boolean full;
+
+    SymbolTable() {
+        this(DEFAULT_MAX_FIELDS);
+    }
+
+    SymbolTable(int maxFields) {
+        this.maxFields = maxFields;
+    }
+
+    /**
+     * Returns the table permissions are scored with. Once it holds {@code maxFields} fields it is swapped for
+     * an empty one; symbols of the old table are re-interned on next use, so it is dropped with them.
+     */
+    static SymbolTable shared() {
+        return current(SHARED);
+    }
+
+    static SymbolTable current(AtomicReference<SymbolTable> holder) {
+        final SymbolTable table = holder.get();
+        if (!table.full) {
+            return table;
+        }
+        holder.compareAndSet(table, new SymbolTable(table.maxFields));
+        return holder.get();
+    }
+
+    boolean isFull() {
+        return full;
+    }
+
+    int generation() {
+        return generation;
+    }
+
+    int findName(String name) {
+        return nameIds.getOrDefault(name, UNKNOWN);
+    }
+
+    int findCode(IdentityField field) {
+        Integer id = fieldIds.get(field);
+        return id != null ? code(id, field) : UNKNOWN;
+    }
+
+    int internName(String name) {
+        Integer id = nameIds.get(name);
+        return id != null ? id : internNameSlow(name);
+    }
+
+    int internCode(IdentityField field) {
+        internName(field.getName());
+        Integer id = fieldIds.get(field);
+        return code(id != null ? id : internFieldSlow(field), field);
+    }
+
+    /**
+     * Returns the code of {@code new WildcardField(name)}, the field a missing pattern field is completed with.
+     */
+    int wildcardCode(int nameId) {
+        return wildcardCodes[nameId];
+    }
+
+    private synchronized int internNameSlow(String name) {
+        Integer existing = nameIds.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        int id = nameIds.size();
+        WildcardField wildcard = new WildcardField(name);
+        Integer wildcardId = fieldIds.get(wildcard);
+        int wildcardCode = code(wildcardId != null ? wildcardId : internFieldSlow(wildcard), wildcard);
+        int[] codes = wildcardCodes;
+        if (id == codes.length) {
+            codes = Arrays.copyOf(codes, codes.length * 2);
+        }
+        codes[id] = wildcardCode;
+        wildcardCodes = codes;
+        nameIds.put(name, id);
+        // Bumped after the name is published: a lookup resolved before this sees an older generation.
+        generation++;
+        return id;
+    }
+
+    private synchronized int internFieldSlow(IdentityField field) {
+        Integer existing = fieldIds.get(field);
+        if (existing != null) {
+            return existing;
+        }
+        int id = fieldIds.size();
+        fieldIds.put(field, id);
+        generation++;
+        if (id + 1 >= maxFields) {
+            full = true;
+        }
+        return id;
+    }
+
+    private static int code(int id, IdentityField field) {
+        return id << 2 | switch (field.getType()) {
+            case WILDCARD -> WILDCARD_BIT;
+            case PREFIX -> PREFIX_BIT;
+            case VALUE -> 0;
+        };
+    }
+}
@@ -1,103 +1,337 @@
 package uac;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-
-import static uac.ResourceIdentity.Builder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public final class UserAccessChecker {
 
+    private static final int PARALLEL_BATCH_THRESHOLD = 1024;
+    private static final int FILTER_DECISION_LIMIT = 4096;
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 16_384;
+    private static final int PARALLEL_SLICE = 4096;
+
     private final UserAccessControl uac;
+    private final AccessMetrics metrics;
+    private final int parallelThreshold;
 
     public UserAccessChecker(UserAccessControl uac) {
         this.uac = uac;
+        this.metrics = null;
+        this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
     }
 
-    private static ResourceIdentity getCompleteIdentity(final ResourceIdentity input, final ResourceIdentity pattern) {
-        final Set<String> fieldSetDiff = new HashSet<>(input.getFieldMap().keySet());
-        for (String fieldName : pattern.getFieldMap().keySet()) {
-            if (!fieldSetDiff.add(fieldName)) {
-                fieldSetDiff.remove(fieldName);
-            }
+    private UserAccessChecker(Builder builder) {
+        this.uac = builder.uac;
+        this.metrics = builder.metrics;
+        this.parallelThreshold = builder.parallelThreshold;
+    }
+
+    public UserAccessLevel getLevel(String userName, final ResourceIdentity identity) {
+
+        final AccessCheckEvent event = new AccessCheckEvent();
+        if (metrics != null || event.isEnabled()) {
+            return getLevelRecorded(userName, identity, event);
         }
 
-        if (fieldSetDiff.isEmpty()) {
-            return input;
+        if (uac instanceof IndexedUserAccessControl indexed) {
+            return indexed.getPermissionIndex(userName).getLevel(identity);
         }
 
-        Builder riBuilder = new Builder();
-        for (String fieldName : fieldSetDiff) {
-            riBuilder = riBuilder.field(new WildcardField(fieldName));
+        return LevelMask.decide(evaluateLoaded(PermissionLoadEvent.load(uac, userName), identity));
+    }
+
+    /**
+     * Starts a session that fetches and compiles the user's permissions once and remembers its decisions.
+     */
+    public AccessSession newSession(String userName) {
+        return new AccessSession(this, userName);
+    }
+
+    UserAccessLevel getLevel(String userName, PermissionIndex index, ResourceIdentity identity) {
+        final AccessCheckEvent event = new AccessCheckEvent();
+        if (metrics == null && !event.isEnabled()) {
+            return index.getLevel(identity);
         }
-        for (Map.Entry<String, IdentityField> entry : input.getFieldMap().entrySet()) {
-            riBuilder = riBuilder.field(entry.getValue());
+        event.begin();
+        final long start = System.nanoTime();
+        return record(userName, identity, event, start, index.getPermissionSet(), index.evaluate(identity));
+    }
+
+    static UserAccessLevel getLevel(Set<ResourcePermission> permissionSet, final ResourceIdentity identity) {
+        return LevelMask.decide(evaluate(permissionSet, identity));
+    }
+
+    private UserAccessLevel getLevelRecorded(String userName, ResourceIdentity identity, AccessCheckEvent event) {
+        event.begin();
+        final long start = System.nanoTime();
+        final Set<ResourcePermission> permissionSet;
+        final int decision;
+        if (uac instanceof IndexedUserAccessControl indexed) {
+            final PermissionIndex index = indexed.getPermissionIndex(userName);
+            permissionSet = index.getPermissionSet();
+            decision = index.evaluate(identity);
+        } else {
+            permissionSet = PermissionLoadEvent.load(uac, userName);
+            decision = evaluateLoaded(permissionSet, identity);
         }
-        return riBuilder.build();
+        return record(userName, identity, event, start, permissionSet, decision);
     }
 
-    private static UserAccessLevel getResultedLevel(Set<ResourcePermission> permissionSet) {
-        UserAccessLevel ual = UserAccessLevel.NONE;
-        for (ResourcePermission p : permissionSet) {
-            UserAccessLevel level = p.getAccessLevel();
-            if (level == UserAccessLevel.WRITE) {
-                ual = level;
-            } else if (level == UserAccessLevel.READ && ual != UserAccessLevel.WRITE) {
-                ual = level;
-            } else if (level == UserAccessLevel.NONE) {
-                return UserAccessLevel.NONE;
-            }
+    private UserAccessLevel record(String userName, ResourceIdentity identity, AccessCheckEvent event, long start,
+                                   Set<ResourcePermission> permissionSet, int decision) {
+        final UserAccessLevel level = LevelMask.decide(decision);
+        if (metrics != null) {
+            metrics.record(System.nanoTime() - start, level, decision, permissionSet, identity);
         }
-        return ual;
+        event.end();
+        if (event.shouldCommit()) {
+            event.userName = userName;
+            event.fieldCount = identity.getFieldMap().size();
+            event.permissionCount = permissionSet == null ? 0 : permissionSet.size();
+            event.bestScore = LevelMask.fieldScore(decision);
+            event.outcome = level.name();
+            event.commit();
+        }
+        return level;
     }
 
-    public UserAccessLevel getLevel(String userName, final ResourceIdentity identity) {
+    private int evaluateLoaded(Set<ResourcePermission> permissionSet, ResourceIdentity identity) {
+        return uac instanceof MappedPolicyStore
+                ? evaluateDecoded(permissionSet, identity, parallelThreshold)
+                : evaluate(permissionSet, identity, parallelThreshold);
+    }
+
+    static int evaluate(Set<ResourcePermission> permissionSet, final ResourceIdentity identity) {
+        return evaluate(permissionSet, identity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Scores sets of at least {@code parallelThreshold} permissions in slices on the common pool and merges the
+     * slices' decisions, which gives the same decision as one sequential pass.
+     */
+    static int evaluate(Set<ResourcePermission> permissionSet, final ResourceIdentity identity, int parallelThreshold) {
+        return evaluate(permissionSet, identity, parallelThreshold, SymbolTable.shared());
+    }
+
+    /**
+     * Scores a set decoded afresh for this call, as a mapped policy file serves it, against a table of its own.
+     * Interning such sets into the shared table would keep every value of the file on the heap. The private
+     * table also takes the lookup's values, so the lookup is resolved once.
+     */
+    static int evaluateDecoded(Set<ResourcePermission> permissionSet, ResourceIdentity identity, int parallelThreshold) {
+        if (permissionSet == null || permissionSet.isEmpty()) {
+            return 0;
+        }
+        final SymbolTable symbolTable = new SymbolTable();
+        identity.internSymbols(symbolTable);
+        return evaluate(permissionSet, identity, parallelThreshold, symbolTable);
+    }
 
-        final Set<ResourcePermission> permissionSet = uac.getPermissionSet(userName);
+    private static int evaluate(Set<ResourcePermission> permissionSet, ResourceIdentity identity, int parallelThreshold,
+                                SymbolTable symbolTable) {
         if (permissionSet == null || permissionSet.isEmpty()) {
-            return UserAccessLevel.NONE;
+            return 0;
         }
 
-        final ResourceIdentity patternIdentity = permissionSet.iterator().next().getIdentity();
-        final ResourceIdentity lookupIdentity = getCompleteIdentity(identity, patternIdentity);
+        final IdentitySymbols pattern = permissionSet.iterator().next().getIdentity().internSymbols(symbolTable);
+
+        if (permissionSet.size() >= parallelThreshold) {
+            final ResourcePermission[] permissions = permissionSet.toArray(new ResourcePermission[0]);
+            return ForkJoinPool.commonPool().invoke(
+                    new ScoreTask(permissions, 0, permissions.length, identity, pattern, symbolTable));
+        }
 
-        final Map<ResourcePermission, Integer> freqMap = new HashMap<>();
+        int decision = 0;
         for (ResourcePermission permission : permissionSet) {
-            freqMap.put(permission, getFrequency(permission.getIdentity().getFieldMap(), lookupIdentity));
+            decision = accumulate(decision, permission, identity, pattern, symbolTable);
+        }
+        return decision;
+    }
+
+    private static int accumulate(int decision, ResourcePermission permission, ResourceIdentity identity,
+                                  IdentitySymbols pattern, SymbolTable symbolTable) {
+        final IdentitySymbols symbols = permission.getIdentity().internSymbols(symbolTable);
+        // Resolved after the permission is interned, so none of its codes is missed; the resolved lookup is
+        // cached on the identity and only redone when the table has grown since.
+        final int freq = getFrequency(symbols, identity.lookupSymbols(symbolTable), pattern, symbolTable);
+        final int maxFreq = LevelMask.score(decision);
+        if (freq > maxFreq) {
+            return freq << LevelMask.BITS | LevelMask.of(permission.getAccessLevel());
+        } else if (freq == maxFreq) {
+            return decision | LevelMask.of(permission.getAccessLevel());
         }
+        return decision;
+    }
+
+    static int score(ResourceIdentity permission, ResourceIdentity identity, ResourceIdentity pattern) {
+        final SymbolTable symbolTable = SymbolTable.shared();
+        final IdentitySymbols permissionSymbols = permission.internSymbols(symbolTable);
+        final IdentitySymbols patternSymbols = pattern.internSymbols(symbolTable);
+        return getFrequency(permissionSymbols, identity.lookupSymbols(symbolTable), patternSymbols, symbolTable);
+    }
+
+    public List<UserAccessLevel> getLevels(String userName, Collection<ResourceIdentity> identities) {
+        return getLevels(userName, identities, false);
+    }
 
-        final int maxFreq = freqMap.values().stream().mapToInt(Integer::intValue).max().orElse(0);
-        if (maxFreq == 0) {
-            return UserAccessLevel.NONE;
+    public List<UserAccessLevel> getLevels(String userName, Collection<ResourceIdentity> identities, boolean parallel) {
+        final ResourceIdentity[] lookups = identities.toArray(new ResourceIdentity[0]);
+        if (lookups.length == 0) {
+            return List.of();
         }
 
-        final Set<ResourcePermission> bestMatch = new HashSet<>();
-        for (Map.Entry<ResourcePermission, Integer> entry : freqMap.entrySet()) {
-            if (Objects.equals(entry.getValue(), maxFreq)) {
-                bestMatch.add(entry.getKey());
+        final PermissionIndex index = getPermissionIndex(userName);
+        final UserAccessLevel[] levels = new UserAccessLevel[lookups.length];
+        if (parallel && lookups.length >= PARALLEL_BATCH_THRESHOLD) {
+            IntStream.range(0, lookups.length).parallel().forEach(i -> levels[i] = index.getLevel(lookups[i]));
+        } else {
+            for (int i = 0; i < lookups.length; i++) {
+                levels[i] = index.getLevel(lookups[i]);
             }
         }
+        return List.of(levels);
+    }
+
+    public Stream<ResourceIdentity> filter(String userName, Stream<ResourceIdentity> identities,
+                                           UserAccessLevel minimumLevel) {
+        final PermissionIndex index = getPermissionIndex(userName);
+        // Identities agreeing on every field a permission uses are decided once; the memo is bounded.
+        final Map<Object, UserAccessLevel> decisions = Collections.synchronizedMap(
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Object, UserAccessLevel> eldest) {
+                        return size() > FILTER_DECISION_LIMIT;
+                    }
+                });
+        return identities.filter(identity -> decisions
+                .computeIfAbsent(index.decisionClass(identity), key -> index.getLevel(identity))
+                .compareTo(minimumLevel) >= 0);
+    }
 
-        return getResultedLevel(bestMatch);
+    PermissionIndex getPermissionIndex(String userName) {
+        return uac instanceof IndexedUserAccessControl indexed
+                ? indexed.getPermissionIndex(userName)
+                : PermissionIndex.of(PermissionLoadEvent.load(uac, userName));
     }
 
-    private static int getFrequency(Map<String, IdentityField> fieldMap, ResourceIdentity lookupIdentity) {
+    private static int getFrequency(IdentitySymbols permission, IdentitySymbols lookup, IdentitySymbols pattern,
+                                    SymbolTable symbolTable) {
+        final int[] names = permission.names;
+        final int[] codes = permission.codes;
         int count = 0;
-        for (final IdentityField f : lookupIdentity.getFieldMap().values()) {
-            final IdentityField lookupField = fieldMap.get(f.getName());
-            if (lookupField == null) {
-                continue; // Unknown fields are ignored.
+        int l = 0;
+        int p = 0;
+        for (int i = 0; i < names.length; i++) {
+            final int name = names[i];
+            while (l < lookup.names.length && lookup.names[l] < name) {
+                l++;
             }
-            if (lookupField.equals(f)) {
-                count += 2;
-            } else if (lookupField.getType() == IdentityType.WILDCARD) {
-                count++;
+            final int lookupCode;
+            final IdentityField lookupField;
+            if (l < lookup.names.length && lookup.names[l] == name) {
+                lookupCode = lookup.codes[l];
+                lookupField = lookup.fields[l];
+            } else {
+                while (p < pattern.names.length && pattern.names[p] < name) {
+                    p++;
+                }
+                if (p == pattern.names.length || pattern.names[p] != name) {
+                    continue; // Unknown fields are ignored.
+                }
+                // Pattern fields missing from the lookup identity are matched as wildcards.
+                lookupCode = symbolTable.wildcardCode(name);
+                lookupField = null;
+            }
+            if (codes[i] == lookupCode) {
+                count += LevelMask.EXACT;
+            } else if ((codes[i] & SymbolTable.WILDCARD_BIT) != 0) {
+                count += LevelMask.WILDCARD;
+            } else if ((codes[i] & SymbolTable.PREFIX_BIT) != 0 && prefixMatches(permission.fields[i], lookupField)) {
+                count += LevelMask.prefix(((PrefixField) permission.fields[i]).segments().length);
             } else {
                 return 0;
             }
         }
         return count;
     }
+
+    static boolean prefixMatches(IdentityField prefix, IdentityField lookupField) {
+        return lookupField != null && PrefixField.canMatch(lookupField) && ((PrefixField) prefix).matches(lookupField.getValue());
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ScoreTask extends RecursiveTask<Integer> {
+
+        private final ResourcePermission[] permissions;
+        private final int from;
+        private final int to;
+        private final ResourceIdentity identity;
+        private final IdentitySymbols pattern;
+        private final SymbolTable symbolTable;
+
+        ScoreTask(ResourcePermission[] permissions, int from, int to, ResourceIdentity identity, IdentitySymbols pattern,
+                  SymbolTable symbolTable) {
+            this.permissions = permissions;
+            this.from = from;
+            this.to = to;
+            this.identity = identity;
+            this.pattern = pattern;
+            this.symbolTable = symbolTable;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= PARALLEL_SLICE) {
+                int decision = 0;
+                for (int i = from; i < to; i++) {
+                    decision = accumulate(decision, permissions[i], identity, pattern, symbolTable);
+                }
+                return decision;
+            }
+            final int mid = (from + to) >>> 1;
+            final ScoreTask left = new ScoreTask(permissions, from, mid, identity, pattern, symbolTable);
+            left.fork();
+            final int right = new ScoreTask(permissions, mid, to, identity, pattern, symbolTable).compute();
+            return LevelMask.merge(left.join(), right);
+        }
+    }
+
+    public static class Builder {
+
+        private final UserAccessControl uac;
+        private AccessMetrics metrics;
+        private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+        public Builder(UserAccessControl uac) {
+            this.uac = uac;
+        }
+
+        public Builder metrics(AccessMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the permission set size from which a scan is split across the common fork/join pool.
+         */
+        public Builder parallelThreshold(int parallelThreshold) {
+            if (parallelThreshold < 1) {
+                throw new IllegalArgumentException("parallelThreshold must be positive");
+            }
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        public UserAccessChecker build() {
+            return new UserAccessChecker(this);
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package uac;
+
+import java.util.UUID;
+
+/**
+ * A value field holding a UUID as its two halves. Equality and hashing use the bits, so checks never format or
+ * parse it. It only equals another {@code UuidField}, never a {@link ValueField} with the same text.
+ */
+public class UuidField extends IdentityField {
+
+    private final long mostSignificantBits;
+    private final long leastSignificantBits;
+
+    public UuidField(String name, UUID value) {
+        this(name, value.getMostSignificantBits(), value.getLeastSignificantBits());
+    }
+
+    public UuidField(String name, long mostSignificantBits, long leastSignificantBits) {
+        super(name, null);
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    public UUID getUuid() {
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    long getLeastSignificantBits() {
+        return leastSignificantBits;
+    }
+
+    @Override
+    public String getValue() {
+        return getUuid().toString();
+    }
+
+    @Override
+    public IdentityType getType() {
+        return IdentityType.VALUE;
+    }
+
+    @Override
+    protected boolean valueEquals(IdentityField that) {
+        final UuidField other = (UuidField) that;
+        return mostSignificantBits == other.mostSignificantBits && leastSignificantBits == other.leastSignificantBits;
+    }
+
+    @Override
+    protected int valueHashCode() {
+        return Long.hashCode(mostSignificantBits) * 31 + Long.hashCode(leastSignificantBits);
+    }
+}
@@ -2,6 +2,14 @@ package uac.demo;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timestamp;
+import uac.AccessSession;
+import uac.PermissionSnapshotStore;
 import uac.ResourceIdentity;
 import uac.ResourcePermission;
 import uac.UserAccessChecker;
@@ -528,14 +536,14 @@ public final class AccessControlDemoServer {
     }
 
     private static final class DemoAccessRepository implements UserAccessControl {
-        private final Map<String, Set<ResourcePermission>> permissions = Map.of(
+        private final PermissionSnapshotStore permissions = PermissionSnapshotStore.of(Map.of(
                 "alice", Set.of(permission(new WildcardField("key"), UserAccessLevel.WRITE)),
                 "bob", Set.of(permission(new WildcardField("key"), UserAccessLevel.READ)),
                 "carol", Set.of(
                         permission(new ValueField("key", "config/payment.yml"), UserAccessLevel.WRITE),
                         permission(new WildcardField("key"), UserAccessLevel.READ)),
                 "dave", Set.of(permission(new WildcardField("key"), UserAccessLevel.NONE))
-        );
+        ));
 
         private final List<String> resourceKeys = List.of(
                 "config/payment.yml",
@@ -546,7 +554,7 @@ public final class AccessControlDemoServer {
 
         @Override
         public Set<ResourcePermission> getPermissionSet(String userName) {
-            return permissions.getOrDefault(userName, Set.of());
+            return permissions.getPermissionSet(userName);
         }
 
         List<String> resourceKeys() {
@@ -576,11 +584,32 @@ public final class AccessControlDemoServer {
             janitor.scheduleAtFixedRate(this::releaseExpired, 1, 1, TimeUnit.SECONDS);
         }
 
-        synchronized LeaseResult acquire(String user, String key, long ttlSeconds) {
+        LeaseResult acquire(String user, String key, long ttlSeconds) {
             if (ttlSeconds < 1 || ttlSeconds > 300) {
                 throw new IllegalArgumentException("ttlSeconds must be between 1 and 300");
             }
-            UserAccessLevel accessLevel = accessChecker.getLevel(user, identity(key));
+            // Started before taking the store lock so the event includes time spent waiting for it.
+            LeaseAcquireEvent event = new LeaseAcquireEvent();
+            event.begin();
+            AccessSession session = accessChecker.newSession(user);
+            LeaseResult result = acquireLocked(session, key, ttlSeconds);
+            event.end();
+            if (event.shouldCommit()) {
+                event.user = user;
+                event.key = key;
+                event.fieldCount = identity(key).getFieldMap().size();
+                // The session keeps the set it checked against, so the event does not fetch it again.
+                event.permissionCount = session.getPermissionSet().size();
+                event.accessLevel = result.accessLevel().name();
+                event.outcome = result.status();
+                event.commit();
+            }
+            return result;
+        }
+
+        private synchronized LeaseResult acquireLocked(AccessSession session, String key, long ttlSeconds) {
+            String user = session.getUserName();
+            UserAccessLevel accessLevel = session.getLevel(identity(key));
             if (accessLevel != UserAccessLevel.WRITE) {
                 return LeaseResult.denied(user, key, accessLevel);
             }
@@ -600,7 +629,21 @@ public final class AccessControlDemoServer {
             return LeaseResult.acquired(lease);
         }
 
-        synchronized LeaseResult release(String leaseId, String key) {
+        LeaseResult release(String leaseId, String key) {
+            LeaseReleaseEvent event = new LeaseReleaseEvent();
+            event.begin();
+            LeaseResult result = releaseLocked(leaseId, key);
+            event.end();
+            if (event.shouldCommit()) {
+                event.user = result.user();
+                event.key = result.key();
+                event.outcome = result.status();
+                event.commit();
+            }
+            return result;
+        }
+
+        private synchronized LeaseResult releaseLocked(String leaseId, String key) {
             ResourceLease lease = leaseId != null ? leasesById.remove(leaseId) : leasesByKey.get(key);
             if (lease == null) {
                 return LeaseResult.notFound(leaseId, key);
@@ -624,11 +667,74 @@ public final class AccessControlDemoServer {
                 if (!lease.expiresAt().isAfter(now)) {
                     leasesById.remove(lease.id());
                     leasesByKey.remove(lease.key());
+                    // Committed without timing: an expiry is worth recording however quick it was.
+                    LeaseExpireEvent event = new LeaseExpireEvent();
+                    if (event.shouldCommit()) {
+                        event.user = lease.user();
+                        event.key = lease.key();
+                        event.expiresAt = lease.expiresAt().toEpochMilli();
+                        event.commit();
+                    }
                 }
             }
         }
     }
 
+    @Name("uac.demo.LeaseAcquire")
+    @Label("Lease Acquire")
+    @Category({"User Access Control", "Demo"})
+    @Threshold("1 ms")
+    private static final class LeaseAcquireEvent extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Key")
+        String key;
+
+        @Label("Field Count")
+        int fieldCount;
+
+        @Label("Permission Count")
+        int permissionCount;
+
+        @Label("Access Level")
+        String accessLevel;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("uac.demo.LeaseRelease")
+    @Label("Lease Release")
+    @Category({"User Access Control", "Demo"})
+    @Threshold("1 ms")
+    private static final class LeaseReleaseEvent extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Key")
+        String key;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("uac.demo.LeaseExpire")
+    @Label("Lease Expire")
+    @Category({"User Access Control", "Demo"})
+    @Threshold("0 ms")
+    private static final class LeaseExpireEvent extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Key")
+        String key;
+
+        @Label("Expires At")
+        @Timestamp
+        long expiresAt;
+    }
+
     private record ResourceLease(String id, String user, String key, Instant expiresAt) {
         String json() {
             return "{\"leaseId\":\"" + AccessControlDemoServer.json(id) + "\",\"user\":\"" + AccessControlDemoServer.json(user) + "\",\"key\":\""
@@ -0,0 +1,87 @@
+package uac;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccessEventsTest {
+
+    @Test
+    void testAccessCheckAndLoadAreRecorded() throws IOException {
+        Set<ResourcePermission> permissions = Set.of(new ResourcePermission(
+                new Builder().field(new ValueField("repository", "demo")).field(new WildcardField("key")).build(),
+                UserAccessLevel.READ));
+        UserAccessChecker checker = new UserAccessChecker(userName -> permissions);
+        ResourceIdentity ri = new Builder()
+                .field(new ValueField("repository", "demo"))
+                .field(new ValueField("key", "config/payment.yml"))
+                .build();
+
+        List<RecordedEvent> events = record(() -> checker.getLevel("alice", ri));
+
+        List<RecordedEvent> checks = ofType(events, "uac.AccessCheck");
+        assertEquals(1, checks.size());
+        assertEquals("alice", checks.get(0).getString("userName"));
+        assertEquals(2, checks.get(0).getInt("fieldCount"));
+        assertEquals(1, checks.get(0).getInt("permissionCount"));
+        assertEquals(3, checks.get(0).getInt("bestScore"));
+        assertEquals("READ", checks.get(0).getString("outcome"));
+
+        List<RecordedEvent> loads = ofType(events, "uac.PermissionLoad");
+        assertEquals(1, loads.size());
+        assertEquals(2, loads.get(0).getInt("fieldCount"));
+        assertEquals("LOADED", loads.get(0).getString("outcome"));
+    }
+
+    @Test
+    void testChecksBelowThresholdAreDropped() throws IOException {
+        UserAccessChecker checker = new UserAccessChecker(userName -> Set.of());
+        ResourceIdentity ri = new Builder().field(new ValueField("key", "a")).build();
+
+        try (Recording recording = new Recording()) {
+            recording.enable("uac.AccessCheck").withThreshold(Duration.ofHours(1));
+            recording.start();
+            checker.getLevel("alice", ri);
+            recording.stop();
+            Path file = Files.createTempFile("uac", ".jfr");
+            try {
+                recording.dump(file);
+                assertEquals(0, ofType(RecordingFile.readAllEvents(file), "uac.AccessCheck").size());
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static List<RecordedEvent> record(Runnable action) throws IOException {
+        try (Recording recording = new Recording()) {
+            recording.enable("uac.AccessCheck").withThreshold(Duration.ZERO);
+            recording.enable("uac.PermissionLoad").withThreshold(Duration.ZERO);
+            recording.start();
+            action.run();
+            recording.stop();
+            Path file = Files.createTempFile("uac", ".jfr");
+            try {
+                recording.dump(file);
+                return RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+}
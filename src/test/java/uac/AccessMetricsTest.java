@@ -0,0 +1,94 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccessMetricsTest {
+
+    @Test
+    void testDenialsAreAttributedToTheirCause() {
+        Set<ResourcePermission> permissions = new LinkedHashSet<>();
+        permissions.add(new ResourcePermission(identity(new WildcardField("repository"), new WildcardField("key")),
+                UserAccessLevel.READ));
+        permissions.add(new ResourcePermission(identity(new ValueField("repository", "secrets"), new WildcardField("key")),
+                UserAccessLevel.NONE));
+        permissions.add(new ResourcePermission(identity(new ValueField("repository", "demo"), new ValueField("key", "a")),
+                UserAccessLevel.WRITE));
+        Map<String, Set<ResourcePermission>> repository = Map.of("alice", permissions);
+        AccessMetrics metrics = new AccessMetrics();
+        UserAccessChecker checker = new UserAccessChecker.Builder(repository::get).metrics(metrics).build();
+
+        assertEquals(UserAccessLevel.WRITE,
+                checker.getLevel("alice", identity(new ValueField("repository", "demo"), new ValueField("key", "a"))));
+        assertEquals(UserAccessLevel.READ, checker.getLevel("alice", identity(new ValueField("repository", "demo"))));
+        assertEquals(UserAccessLevel.NONE, checker.getLevel("alice", identity(new ValueField("repository", "secrets"))));
+        assertEquals(UserAccessLevel.NONE, checker.getLevel("bob", identity(new ValueField("repository", "demo"))));
+
+        assertEquals(1, metrics.decisions(UserAccessLevel.WRITE));
+        assertEquals(1, metrics.decisions(UserAccessLevel.READ));
+        assertEquals(2, metrics.decisions(UserAccessLevel.NONE));
+        assertEquals(1, metrics.noneGrantDenials());
+        assertEquals(1, metrics.noMatchDenials());
+        assertEquals(4, metrics.latencyNanos().count());
+        assertEquals(9, metrics.permissionSetSize().sum());
+        assertEquals(2, metrics.paddedFields().sum());
+    }
+
+    @Test
+    void testIndexedAndScanningCheckersRecordAlike() {
+        Set<ResourcePermission> permissions = Set.of(
+                new ResourcePermission(identity(new ValueField("key", "a")), UserAccessLevel.WRITE));
+        AccessMetrics scanMetrics = new AccessMetrics();
+        AccessMetrics indexedMetrics = new AccessMetrics();
+        UserAccessChecker scan = new UserAccessChecker.Builder(userName -> permissions).metrics(scanMetrics).build();
+        UserAccessChecker indexed = new UserAccessChecker.Builder(new CompiledUserAccessControl(userName -> permissions))
+                .metrics(indexedMetrics).build();
+
+        for (String value : new String[]{"a", "b"}) {
+            ResourceIdentity ri = identity(new ValueField("key", value));
+            assertEquals(scan.getLevel("alice", ri), indexed.getLevel("alice", ri));
+        }
+        for (AccessMetrics metrics : new AccessMetrics[]{scanMetrics, indexedMetrics}) {
+            assertEquals(1, metrics.decisions(UserAccessLevel.WRITE));
+            assertEquals(1, metrics.noMatchDenials());
+            assertEquals(0, metrics.noneGrantDenials());
+        }
+    }
+
+    @Test
+    void testHistogramPercentilesAreBucketUpperBounds() {
+        AccessMetrics.Histogram histogram = new AccessMetrics().latencyNanos();
+        assertEquals(0, histogram.valueAtPercentile(99));
+
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+
+        assertEquals(101, histogram.count());
+        assertEquals(5050, histogram.sum());
+        assertEquals(100, histogram.max());
+        assertEquals(1, histogram.bucketCount(0));
+        assertEquals(2, histogram.bucketCount(2));
+        assertEquals(63, histogram.valueAtPercentile(50));
+        assertEquals(100, histogram.valueAtPercentile(100));
+        assertTrue(histogram.mean() > 49);
+        assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(101));
+    }
+
+    private static ResourceIdentity identity(IdentityField... fields) {
+        Builder builder = new Builder();
+        for (IdentityField field : fields) {
+            builder.field(field);
+        }
+        return builder.build();
+    }
+}
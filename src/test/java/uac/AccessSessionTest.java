@@ -0,0 +1,92 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccessSessionTest {
+
+    @Test
+    void testFetchesPermissionsOnceAndOnlyWhenUsed() {
+        AtomicInteger loads = new AtomicInteger();
+        UserAccessControl uac = userName -> {
+            loads.incrementAndGet();
+            return permissions();
+        };
+        AccessSession session = new UserAccessChecker(uac).newSession("alice");
+        assertEquals(0, loads.get());
+
+        assertEquals(UserAccessLevel.WRITE, session.getLevel(identity("demo", "config/payment.yml")));
+        assertEquals(UserAccessLevel.READ, session.getLevel(identity("demo", "readme.md")));
+        assertEquals(UserAccessLevel.WRITE, session.getLevel(identity("demo", "config/payment.yml")));
+        assertEquals(UserAccessLevel.NONE, session.getLevel(identity("prod", "readme.md")));
+        assertEquals("alice", session.getUserName());
+        assertEquals(permissions(), session.getPermissionSet());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testKeepsDecisionsForItsLifetime() {
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", permissions()));
+        UserAccessChecker checker = new UserAccessChecker(store);
+        AccessSession session = checker.newSession("alice");
+        ResourceIdentity payment = identity("demo", "config/payment.yml");
+        assertEquals(UserAccessLevel.WRITE, session.getLevel(payment));
+
+        store.update(update -> update.put("alice", Set.of()));
+        assertEquals(UserAccessLevel.WRITE, session.getLevel(payment));
+        assertEquals(UserAccessLevel.NONE, checker.newSession("alice").getLevel(payment));
+    }
+
+    @Test
+    void testSharedAcrossVirtualThreads() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        UserAccessControl uac = userName -> {
+            loads.incrementAndGet();
+            return permissions();
+        };
+        UserAccessChecker checker = new UserAccessChecker(uac);
+        AccessSession session = checker.newSession("alice");
+
+        Random random = new Random(23);
+        String[] keys = {"config/payment.yml", "readme.md", "config/tax.yml"};
+        List<ResourceIdentity> identities = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            identities.add(identity(random.nextBoolean() ? "demo" : "prod", keys[random.nextInt(keys.length)]));
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<UserAccessLevel>> levels = new ArrayList<>();
+            for (ResourceIdentity identity : identities) {
+                levels.add(executor.submit(() -> session.getLevel(identity)));
+            }
+            for (int i = 0; i < identities.size(); i++) {
+                assertEquals(UserAccessChecker.getLevel(permissions(), identities.get(i)), levels.get(i).get());
+            }
+        }
+        assertEquals(1, loads.get());
+    }
+
+    private static Set<ResourcePermission> permissions() {
+        return new LinkedHashSet<>(List.of(
+                new ResourcePermission(new Builder().field(new ValueField("repository", "demo"))
+                        .field(new WildcardField("key")).build(), UserAccessLevel.READ),
+                new ResourcePermission(new Builder().field(new ValueField("repository", "demo"))
+                        .field(new ValueField("key", "config/payment.yml")).build(), UserAccessLevel.WRITE)));
+    }
+
+    private static ResourceIdentity identity(String repository, String key) {
+        return new Builder().field(new ValueField("repository", repository)).field(new ValueField("key", key)).build();
+    }
+}
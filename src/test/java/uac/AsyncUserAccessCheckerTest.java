@@ -0,0 +1,98 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncUserAccessCheckerTest {
+
+    private static final Set<ResourcePermission> PERMISSIONS = Set.of(new ResourcePermission(
+            new Builder().field(new WildcardField("key")).build(), UserAccessLevel.WRITE));
+
+    @Test
+    void testConcurrentLookupsShareOneLoad() {
+        List<CompletableFuture<Set<ResourcePermission>>> loads = new ArrayList<>();
+        SingleFlightUserAccessControl singleFlight = new SingleFlightUserAccessControl(userName -> {
+            CompletableFuture<Set<ResourcePermission>> load = new CompletableFuture<>();
+            loads.add(load);
+            return load;
+        });
+        AsyncUserAccessChecker checker = new AsyncUserAccessChecker(singleFlight);
+
+        CompletableFuture<UserAccessLevel> first = checker.getLevel("alice", key("a"));
+        CompletableFuture<UserAccessLevel> second = checker.getLevel("alice", key("b"));
+        assertEquals(1, loads.size());
+        assertEquals(1, singleFlight.inFlightCount());
+        assertFalse(first.isDone());
+
+        loads.get(0).complete(PERMISSIONS);
+        assertEquals(UserAccessLevel.WRITE, first.join());
+        assertEquals(UserAccessLevel.WRITE, second.join());
+        assertEquals(0, singleFlight.inFlightCount());
+
+        checker.getLevel("alice", key("c"));
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    void testCancellingOneCallerKeepsSharedLoad() {
+        CompletableFuture<Set<ResourcePermission>> load = new CompletableFuture<>();
+        SingleFlightUserAccessControl singleFlight = new SingleFlightUserAccessControl(userName -> load);
+
+        CompletableFuture<Set<ResourcePermission>> first = singleFlight.getPermissionSetAsync("alice");
+        CompletableFuture<Set<ResourcePermission>> second = singleFlight.getPermissionSetAsync("alice");
+        first.cancel(true);
+        load.complete(PERMISSIONS);
+        assertEquals(PERMISSIONS, second.join());
+    }
+
+    @Test
+    void testFailedLoadIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        SingleFlightUserAccessControl singleFlight = new SingleFlightUserAccessControl(userName -> {
+            if (attempts.incrementAndGet() == 1) {
+                return CompletableFuture.failedFuture(new IllegalStateException("directory unavailable"));
+            }
+            return CompletableFuture.completedFuture(PERMISSIONS);
+        });
+
+        assertThrows(CompletionException.class, () -> singleFlight.getPermissionSetAsync("alice").join());
+        assertEquals(PERMISSIONS, singleFlight.getPermissionSetAsync("alice").join());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void testLoaderThrowingSynchronouslyFailsFuture() {
+        SingleFlightUserAccessControl singleFlight = new SingleFlightUserAccessControl(userName -> {
+            throw new IllegalStateException("directory unavailable");
+        });
+        assertThrows(CompletionException.class, () -> singleFlight.getPermissionSetAsync("alice").join());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void testBlockingAccessControlRunsOnVirtualThreads() {
+        AsyncUserAccessChecker checker = new AsyncUserAccessChecker(AsyncUserAccessControl.of(userName -> {
+            if (!Thread.currentThread().isVirtual()) {
+                throw new IllegalStateException("expected a virtual thread");
+            }
+            return "alice".equals(userName) ? PERMISSIONS : null;
+        }));
+        assertEquals(UserAccessLevel.WRITE, checker.getLevel("alice", key("a")).join());
+        assertEquals(UserAccessLevel.NONE, checker.getLevel("bob", key("a")).join());
+    }
+
+    private static ResourceIdentity key(String key) {
+        return new Builder().field(new ValueField("key", key)).build();
+    }
+}
@@ -0,0 +1,94 @@
+package uac;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingUserAccessCheckerTest {
+
+    private final Map<String, Set<ResourcePermission>> permissions = new HashMap<>();
+    private final Map<String, Integer> loads = new HashMap<>();
+    private CachingUserAccessChecker cachingChecker;
+
+    @BeforeEach
+    void setUp() {
+        permissions.put("alice", Set.of(permission(new WildcardField("key"), UserAccessLevel.WRITE)));
+        permissions.put("bob", Set.of(permission(new WildcardField("key"), UserAccessLevel.READ)));
+        UserAccessChecker checker = new UserAccessChecker(userName -> {
+            loads.merge(userName, 1, Integer::sum);
+            return permissions.get(userName);
+        });
+        cachingChecker = new CachingUserAccessChecker(checker, 4);
+    }
+
+    @Test
+    void testRepeatedCheckIsServedFromCache() {
+        assertEquals(UserAccessLevel.WRITE, cachingChecker.getLevel("alice", key("a")));
+        assertEquals(UserAccessLevel.WRITE, cachingChecker.getLevel("alice", key("a")));
+        assertEquals(1, loads.get("alice"));
+        assertEquals(new CachingUserAccessChecker.Stats(1, 1, 0), cachingChecker.stats());
+        assertEquals(0.5, cachingChecker.stats().hitRate());
+    }
+
+    @Test
+    void testInvalidateUserDropsOnlyThatUser() {
+        cachingChecker.getLevel("alice", key("a"));
+        cachingChecker.getLevel("bob", key("a"));
+        permissions.put("alice", Set.of(permission(new WildcardField("key"), UserAccessLevel.NONE)));
+
+        cachingChecker.invalidate("alice");
+        assertEquals(1, cachingChecker.size());
+        assertEquals(UserAccessLevel.NONE, cachingChecker.getLevel("alice", key("a")));
+        assertEquals(UserAccessLevel.READ, cachingChecker.getLevel("bob", key("a")));
+        assertEquals(2, loads.get("alice"));
+        assertEquals(1, loads.get("bob"));
+    }
+
+    @Test
+    void testInvalidateAllDropsEveryDecision() {
+        cachingChecker.getLevel("alice", key("a"));
+        cachingChecker.getLevel("bob", key("a"));
+        cachingChecker.invalidateAll();
+        assertEquals(0, cachingChecker.size());
+        cachingChecker.getLevel("bob", key("a"));
+        assertEquals(2, loads.get("bob"));
+    }
+
+    @Test
+    void testFrequentlyUsedDecisionsSurviveEviction() {
+        cachingChecker.getLevel("alice", key("hot"));
+        cachingChecker.getLevel("alice", key("hot"));
+        cachingChecker.getLevel("alice", key("hot"));
+        for (int i = 0; i < 10; i++) {
+            cachingChecker.getLevel("alice", key("cold" + i));
+        }
+        assertEquals(4, cachingChecker.size());
+        assertTrue(cachingChecker.stats().evictionCount() > 0);
+
+        int loadsBefore = loads.get("alice");
+        cachingChecker.getLevel("alice", key("hot"));
+        assertEquals(loadsBefore, loads.get("alice"));
+    }
+
+    @Test
+    void testMaximumSizeMustBePositive() {
+        UserAccessChecker checker = new UserAccessChecker(userName -> Set.of());
+        assertThrows(IllegalArgumentException.class, () -> new CachingUserAccessChecker(checker, 0));
+    }
+
+    private static ResourceIdentity key(String key) {
+        return new Builder().field(new ValueField("key", key)).build();
+    }
+
+    private static ResourcePermission permission(IdentityField keyField, UserAccessLevel level) {
+        return new ResourcePermission(new Builder().field(keyField).build(), level);
+    }
+}
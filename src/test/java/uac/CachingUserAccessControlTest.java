@@ -0,0 +1,245 @@
+package uac;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachingUserAccessControlTest {
+
+    private final Map<String, Set<ResourcePermission>> backend = new HashMap<>();
+    private final Map<String, Integer> loads = new HashMap<>();
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private long now;
+    private boolean failing;
+    private Runnable duringLoad = () -> {};
+    private UserAccessControl directory;
+
+    @BeforeEach
+    void setUp() {
+        backend.put("alice", permissions(UserAccessLevel.WRITE, 1));
+        backend.put("bob", permissions(UserAccessLevel.READ, 3));
+        directory = userName -> {
+            loads.merge(userName, 1, Integer::sum);
+            if (failing) {
+                throw new IllegalStateException("directory unavailable");
+            }
+            now += 5;
+            duringLoad.run();
+            return backend.get(userName);
+        };
+    }
+
+    @Test
+    void testEntryIsReusedUntilExpiry() {
+        CachingUserAccessControl cache = builder().build();
+        UserAccessChecker checker = new UserAccessChecker(cache);
+
+        assertEquals(UserAccessLevel.WRITE, checker.getLevel("alice", key("a")));
+        assertEquals(UserAccessLevel.WRITE, checker.getLevel("alice", key("b")));
+        assertEquals(1, loads.get("alice"));
+
+        now += 100;
+        backend.put("alice", permissions(UserAccessLevel.READ, 1));
+        assertEquals(UserAccessLevel.READ, checker.getLevel("alice", key("a")));
+        assertEquals(2, loads.get("alice"));
+
+        CachingUserAccessControl.Stats stats = cache.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(2, stats.loadSuccessCount());
+        assertEquals(5.0, stats.averageLoadPenaltyNanos());
+    }
+
+    @Test
+    void testStaleEntryIsServedWhileRefreshing() {
+        CachingUserAccessControl cache = builder().refreshAfterWrite(Duration.ofNanos(50)).build();
+        cache.getPermissionIndex("alice");
+        backend.put("alice", permissions(UserAccessLevel.READ, 1));
+
+        now += 60;
+        assertEquals(UserAccessLevel.WRITE, cache.getPermissionIndex("alice").getLevel(key("a")));
+        assertEquals(UserAccessLevel.WRITE, cache.getPermissionIndex("alice").getLevel(key("a")));
+        assertEquals(1, refreshes.size());
+
+        refreshes.remove(0).run();
+        assertEquals(UserAccessLevel.READ, cache.getPermissionIndex("alice").getLevel(key("a")));
+        assertEquals(2, loads.get("alice"));
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    void testFailedRefreshKeepsServingStaleEntry() {
+        CachingUserAccessControl cache = builder().refreshAfterWrite(Duration.ofNanos(50)).build();
+        cache.getPermissionIndex("alice");
+
+        now += 60;
+        failing = true;
+        cache.getPermissionIndex("alice");
+        refreshes.remove(0).run();
+        assertEquals(UserAccessLevel.WRITE, cache.getPermissionIndex("alice").getLevel(key("a")));
+        assertEquals(1, refreshes.size());
+        assertEquals(1, cache.stats().loadFailureCount());
+
+        now += 100;
+        assertThrows(IllegalStateException.class, () -> cache.getPermissionIndex("alice"));
+    }
+
+    @Test
+    void testInvalidatingAnotherUserKeepsRefresh() {
+        CachingUserAccessControl cache = builder().refreshAfterWrite(Duration.ofNanos(50)).build();
+        cache.getPermissionIndex("alice");
+        cache.getPermissionIndex("bob");
+        backend.put("alice", permissions(UserAccessLevel.READ, 1));
+
+        now += 60;
+        cache.getPermissionIndex("alice");
+        duringLoad = () -> cache.invalidate("bob");
+        refreshes.remove(0).run();
+        assertEquals(UserAccessLevel.READ, cache.getPermissionIndex("alice").getLevel(key("a")));
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    void testRefreshAheadResumesAfterDiscardedRefresh() {
+        CachingUserAccessControl cache = builder().refreshAfterWrite(Duration.ofNanos(50)).build();
+        cache.getPermissionIndex("alice");
+
+        now += 60;
+        cache.getPermissionIndex("alice");
+        duringLoad = () -> cache.invalidate("alice");
+        refreshes.remove(0).run();
+        duringLoad = () -> {};
+        assertEquals(0, cache.weight());
+
+        cache.getPermissionIndex("alice");
+        now += 60;
+        cache.getPermissionIndex("alice");
+        assertEquals(1, refreshes.size());
+        refreshes.remove(0).run();
+        assertEquals(1, cache.weight());
+        assertEquals(4, loads.get("alice"));
+    }
+
+    @Test
+    void testWeightIsBoundedByPermissionCount() {
+        CachingUserAccessControl cache = builder().maximumWeight(3).build();
+        cache.getPermissionIndex("alice");
+        assertEquals(1, cache.weight());
+
+        cache.getPermissionIndex("bob");
+        assertEquals(3, cache.weight());
+        assertEquals(1, cache.stats().evictionCount());
+
+        cache.getPermissionIndex("bob");
+        assertEquals(1, loads.get("bob"));
+    }
+
+    @Test
+    void testInvalidationReloadsPermissions() {
+        CachingUserAccessControl cache = builder().build();
+        cache.getPermissionIndex("alice");
+        cache.getPermissionIndex("bob");
+
+        cache.invalidate("alice");
+        assertEquals(3, cache.weight());
+        cache.getPermissionIndex("alice");
+        assertEquals(2, loads.get("alice"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.weight());
+        assertEquals(backend.get("bob"), cache.getPermissionSet("bob"));
+        assertEquals(2, loads.get("bob"));
+    }
+
+    @Test
+    void testInvalidateDuringSlowLoadIsNotCached() throws Exception {
+        AtomicReference<Set<ResourcePermission>> current = new AtomicReference<>(permissions(UserAccessLevel.WRITE, 1));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CachingUserAccessControl cache = new CachingUserAccessControl.Builder(userName -> {
+            Set<ResourcePermission> permissions = current.get();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return permissions;
+        }).build();
+
+        Thread loader = Thread.ofPlatform().start(() -> cache.getPermissionIndex("alice"));
+        loading.await();
+        current.set(permissions(UserAccessLevel.READ, 1));
+        cache.invalidate("alice");
+        release.countDown();
+        loader.join();
+
+        assertEquals(0, cache.weight());
+        assertEquals(current.get(), cache.getPermissionSet("alice"));
+    }
+
+    @Test
+    void testRacingInvalidateNeverLeavesStaleEntry() throws Exception {
+        AtomicInteger version = new AtomicInteger();
+        CachingUserAccessControl cache = new CachingUserAccessControl.Builder(
+                userName -> permissions(UserAccessLevel.READ, 1 + version.get() % 3)).build();
+        for (int round = 0; round < 500; round++) {
+            Thread loader = Thread.ofPlatform().start(() -> cache.getPermissionIndex("alice"));
+            Thread.yield();
+            version.incrementAndGet();
+            cache.invalidate("alice");
+            loader.join();
+            assertEquals(1 + version.get() % 3, cache.getPermissionSet("alice").size());
+            cache.invalidate("alice");
+        }
+    }
+
+    @Test
+    void testInvalidConfigurationIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> builder().expireAfterWrite(Duration.ZERO).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> builder().refreshAfterWrite(Duration.ofNanos(100)).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> builder().maximumWeight(-1).build());
+    }
+
+    private CachingUserAccessControl.Builder builder() {
+        return new CachingUserAccessControl.Builder(directory)
+                .expireAfterWrite(Duration.ofNanos(100))
+                .executor(refreshes::add)
+                .ticker(() -> now);
+    }
+
+    private static Set<ResourcePermission> permissions(UserAccessLevel level, int count) {
+        Set<ResourcePermission> permissions = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            permissions.add(new ResourcePermission(new Builder()
+                    .field(new ValueField("repository", "repo" + i))
+                    .field(new WildcardField("key"))
+                    .build(), level));
+        }
+        return permissions;
+    }
+
+    private static ResourceIdentity key(String key) {
+        return new Builder()
+                .field(new ValueField("repository", "repo0"))
+                .field(new ValueField("key", key))
+                .build();
+    }
+}
@@ -0,0 +1,135 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdentitySchemaTest {
+
+    private static final String[] FIELDS = {"repository", "key", "env"};
+    private static final String[] VALUES = {"demo", "prod", "config", "config/payment.yml", "config/eu/tax.yml"};
+    private static final String[] PREFIXES = {"config", "config/eu"};
+
+    @Test
+    void testCompletesMissingPatternFieldsAsWildcards() {
+        IdentitySchema schema = IdentitySchema.of(FIELDS);
+        IdentitySchema.Permissions permissions = schema.compile(new LinkedHashSet<>(List.of(
+                new ResourcePermission(new Builder().field(new WildcardField("repository"))
+                        .field(new WildcardField("key")).build(), UserAccessLevel.READ),
+                new ResourcePermission(new Builder().field(new ValueField("repository", "demo"))
+                        .field(new WildcardField("key")).build(), UserAccessLevel.WRITE),
+                new ResourcePermission(new Builder().field(new ValueField("repository", "demo"))
+                        .field(new ValueField("key", "secret")).build(), UserAccessLevel.NONE))));
+
+        assertEquals(3, permissions.size());
+        assertEquals(UserAccessLevel.WRITE, permissions.getLevel(schema.identity("demo", null, null)));
+        assertEquals(UserAccessLevel.WRITE, permissions.getLevel(schema.identity("demo", "public", "eu")));
+        assertEquals(UserAccessLevel.NONE, permissions.getLevel(schema.identity("demo", "secret", null)));
+        assertEquals(UserAccessLevel.READ, permissions.getLevel(schema.identity("prod", "secret", null)));
+    }
+
+    @Test
+    void testRejectsFieldsOutsideSchema() {
+        IdentitySchema schema = IdentitySchema.of("repository");
+        Set<ResourcePermission> permissionSet = Set.of(new ResourcePermission(
+                new Builder().field(new ValueField("key", "config")).build(), UserAccessLevel.READ));
+        assertThrows(IllegalArgumentException.class, () -> schema.compile(permissionSet));
+        assertThrows(IllegalArgumentException.class, () -> IdentitySchema.of("key", "key"));
+        assertThrows(IllegalArgumentException.class, () -> schema.identity("demo", "config"));
+        assertThrows(IllegalArgumentException.class, () -> IdentitySchema.of("repository").compile(Set.of())
+                .getLevel(schema.identity("demo")));
+    }
+
+    @Test
+    void testSharedIdentityStaysConsistentWhileValuesAreInterned() throws Exception {
+        IdentitySchema schema = IdentitySchema.of("repository", "key");
+        IdentitySchema.Identity identity = schema.identity("demo", "key0");
+        IdentitySchema.Permissions permissions = schema.compile(Set.of(new ResourcePermission(new Builder()
+                .field(new ValueField("repository", "demo")).field(new WildcardField("key")).build(),
+                UserAccessLevel.READ)));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<UserAccessLevel>> levels = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                levels.add(executor.submit(() -> permissions.getLevel(identity)));
+                if (i % 100 == 0) {
+                    // Interning new key values bumps the generation the cached codes are checked against.
+                    schema.compile(Set.of(new ResourcePermission(new Builder()
+                            .field(new ValueField("key", "key" + i)).build(), UserAccessLevel.WRITE)));
+                }
+            }
+            for (Future<UserAccessLevel> level : levels) {
+                assertEquals(UserAccessLevel.READ, level.get());
+            }
+        }
+    }
+
+    @Test
+    void testSwapsFullSymbolTableWithoutBreakingCompiledPermissions() {
+        IdentitySchema schema = IdentitySchema.of(8, "repository", "key");
+        IdentitySchema.Identity identity = schema.identity("demo", "key0");
+        List<IdentitySchema.Permissions> compiled = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            compiled.add(schema.compile(Set.of(new ResourcePermission(new Builder()
+                    .field(new ValueField("repository", "demo")).field(new ValueField("key", "key" + i)).build(),
+                    UserAccessLevel.WRITE))));
+        }
+
+        assertNotSame(compiled.get(0).symbols(), compiled.get(compiled.size() - 1).symbols());
+        for (int i = 0; i < compiled.size(); i++) {
+            assertEquals(i == 0 ? UserAccessLevel.WRITE : UserAccessLevel.NONE, compiled.get(i).getLevel(identity));
+            assertEquals(UserAccessLevel.WRITE, compiled.get(i).getLevel(schema.identity("demo", "key" + i)));
+        }
+    }
+
+    @Test
+    void testResolvesLikeReference() {
+        Random random = new Random(21);
+        IdentitySchema schema = IdentitySchema.of(FIELDS);
+        for (int round = 0; round < 300; round++) {
+            Set<ResourcePermission> permissionSet = new LinkedHashSet<>();
+            int size = 1 + random.nextInt(10);
+            while (permissionSet.size() < size) {
+                permissionSet.add(new ResourcePermission(randomIdentity(random, true),
+                        UserAccessLevel.values()[random.nextInt(UserAccessLevel.values().length)]));
+            }
+            // Identities bound before the grants are compiled pick up their values once they are known.
+            ResourceIdentity early = randomIdentity(random, false);
+            IdentitySchema.Identity bound = schema.bind(early);
+            IdentitySchema.Permissions permissions = schema.compile(permissionSet);
+            assertEquals(ReferenceAccessChecker.getLevel(permissionSet, early), permissions.getLevel(bound));
+            for (int i = 0; i < 30; i++) {
+                ResourceIdentity ri = randomIdentity(random, false);
+                IdentitySchema.Identity identity = schema.bind(ri);
+                assertEquals(ReferenceAccessChecker.getLevel(permissionSet, ri), permissions.getLevel(identity));
+                assertEquals(ri, identity.toResourceIdentity());
+            }
+        }
+    }
+
+    private static ResourceIdentity randomIdentity(Random random, boolean permission) {
+        Builder builder = new Builder();
+        for (String name : FIELDS) {
+            int pick = random.nextInt(permission ? 4 : 3);
+            if (pick == 0) {
+                builder.field(new WildcardField(name));
+            } else if (pick == 1) {
+                builder.field(new ValueField(name, VALUES[random.nextInt(VALUES.length)]));
+            } else if (pick == 3) {
+                builder.field(new PrefixField(name, PREFIXES[random.nextInt(PREFIXES.length)]));
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,113 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedPolicyStoreTest {
+
+    @Test
+    void testServesEveryUserFromMapping() throws IOException {
+        Random random = new Random(5);
+        Map<String, Set<ResourcePermission>> permissionsByUser = new HashMap<>();
+        for (String userName : new String[]{"alice", "bob", "émile", "zoë", "", "😀", "carol"}) {
+            permissionsByUser.put(userName, PermissionIndexTest.randomPermissions(random, 1 + random.nextInt(12)));
+        }
+        Path file = Files.createTempFile("uac", ".uacp");
+        try {
+            PolicyWriter.write(permissionsByUser, file);
+            try (MappedPolicyStore store = MappedPolicyStore.open(file)) {
+                assertEquals(permissionsByUser.size(), store.userCount());
+                for (Map.Entry<String, Set<ResourcePermission>> entry : permissionsByUser.entrySet()) {
+                    Set<ResourcePermission> mapped = store.getPermissionSet(entry.getKey());
+                    assertEquals(entry.getValue(), mapped);
+                    assertEquals(entry.getValue().iterator().next(), mapped.iterator().next());
+                }
+                assertTrue(store.getPermissionSet("mallory").isEmpty());
+
+                UserAccessChecker checker = new UserAccessChecker(new CompiledUserAccessControl(store));
+                for (int i = 0; i < 200; i++) {
+                    ResourceIdentity ri = PermissionIndexTest.randomIdentity(random);
+                    assertEquals(ReferenceAccessChecker.getLevel(permissionsByUser.get("zoë"), ri),
+                            checker.getLevel("zoë", ri));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testServingLeavesSymbolTableUntouched() throws IOException {
+        Map<String, Set<ResourcePermission>> permissionsByUser = new HashMap<>();
+        for (int user = 0; user < 200; user++) {
+            permissionsByUser.put("user" + user, Set.of(new ResourcePermission(new ResourceIdentity.Builder()
+                    .field(new ValueField("mapped-tenant", "tenant" + user))
+                    .field(new ValueField("mapped-key", "key" + user)).build(), UserAccessLevel.WRITE)));
+        }
+        Path file = Files.createTempFile("uac", ".uacp");
+        try {
+            PolicyWriter.write(permissionsByUser, file);
+            try (MappedPolicyStore store = MappedPolicyStore.open(file)) {
+                int generation = SymbolTable.shared().generation();
+                UserAccessChecker compiled = new UserAccessChecker(new CompiledUserAccessControl(store));
+                UserAccessChecker scanning = new UserAccessChecker(store);
+                UserAccessChecker recorded = new UserAccessChecker.Builder(store).metrics(new AccessMetrics()).build();
+                for (int user = 0; user < 200; user++) {
+                    ResourceIdentity ri = new ResourceIdentity.Builder()
+                            .field(new ValueField("mapped-tenant", "tenant" + user))
+                            .field(new ValueField("mapped-key", "key" + user)).build();
+                    ResourceIdentity other = new ResourceIdentity.Builder()
+                            .field(new ValueField("mapped-tenant", "tenant" + user))
+                            .field(new ValueField("mapped-key", "other")).build();
+                    assertEquals(permissionsByUser.get("user" + user), store.getPermissionSet("user" + user));
+                    assertEquals(UserAccessLevel.WRITE, compiled.getLevel("user" + user, ri));
+                    assertEquals(UserAccessLevel.WRITE, scanning.getLevel("user" + user, ri));
+                    assertEquals(UserAccessLevel.WRITE, recorded.getLevel("user" + user, ri));
+                    assertEquals(UserAccessLevel.NONE, scanning.getLevel("user" + user, other));
+                }
+                assertEquals(generation, SymbolTable.shared().generation());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testClosedStoreRejectsLookups() throws IOException {
+        Path file = Files.createTempFile("uac", ".uacp");
+        try {
+            PolicyWriter.write(Map.of("alice", Set.of()), file);
+            MappedPolicyStore store = MappedPolicyStore.open(file);
+            assertTrue(store.getPermissionSet("alice").isEmpty());
+            store.close();
+            assertThrows(IllegalStateException.class, () -> store.getPermissionSet("alice"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testRejectsTruncatedFile() throws IOException {
+        Path file = Files.createTempFile("uac", ".uacp");
+        try {
+            PolicyWriter.write(Map.of("alice", PermissionIndexTest.randomPermissions(new Random(1), 3)), file);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+            assertThrows(IOException.class, () -> MappedPolicyStore.open(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelEvaluationTest {
+
+    private static final String[] REPOSITORIES = {"demo", "prod", "test"};
+
+    @Test
+    void testMergeKeepsBestScoreAndPoolsTies() {
+        int read = 3 << LevelMask.BITS | LevelMask.READ_SEEN;
+        int write = 3 << LevelMask.BITS | LevelMask.WRITE_SEEN;
+        int none = 2 << LevelMask.BITS | LevelMask.NONE_SEEN;
+        assertEquals(read, LevelMask.merge(read, none));
+        assertEquals(read, LevelMask.merge(none, read));
+        assertEquals(3 << LevelMask.BITS | LevelMask.READ_SEEN | LevelMask.WRITE_SEEN, LevelMask.merge(read, write));
+        assertEquals(none, LevelMask.merge(0, none));
+    }
+
+    @Test
+    void testMatchesSequentialDecisions() {
+        Random random = new Random(24);
+        for (int round = 0; round < 4; round++) {
+            Set<ResourcePermission> permissionSet = randomPermissions(random, 20_000 + random.nextInt(20_000));
+            for (int i = 0; i < 50; i++) {
+                ResourceIdentity identity = randomIdentity(random, false);
+                assertEquals(UserAccessChecker.evaluate(permissionSet, identity),
+                        UserAccessChecker.evaluate(permissionSet, identity, 1));
+            }
+        }
+    }
+
+    @Test
+    void testCheckerSplitsAboveThreshold() {
+        Random random = new Random(42);
+        Set<ResourcePermission> permissionSet = randomPermissions(random, 30_000);
+        UserAccessControl uac = userName -> permissionSet;
+        UserAccessChecker parallel = new UserAccessChecker.Builder(uac).parallelThreshold(1024).build();
+        UserAccessChecker recorded = new UserAccessChecker.Builder(uac).parallelThreshold(1024)
+                .metrics(new AccessMetrics()).build();
+        for (int i = 0; i < 100; i++) {
+            ResourceIdentity identity = randomIdentity(random, false);
+            UserAccessLevel expected = UserAccessChecker.getLevel(permissionSet, identity);
+            assertEquals(expected, parallel.getLevel("automation", identity));
+            assertEquals(expected, recorded.getLevel("automation", identity));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new UserAccessChecker.Builder(uac).parallelThreshold(0));
+    }
+
+    private static Set<ResourcePermission> randomPermissions(Random random, int size) {
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>();
+        UserAccessLevel[] levels = UserAccessLevel.values();
+        while (permissionSet.size() < size) {
+            permissionSet.add(new ResourcePermission(randomIdentity(random, true), levels[random.nextInt(levels.length)]));
+        }
+        return permissionSet;
+    }
+
+    private static ResourceIdentity randomIdentity(Random random, boolean permission) {
+        Builder builder = new Builder();
+        int pick = random.nextInt(4);
+        if (pick == 0) {
+            builder.field(new WildcardField("repository"));
+        } else if (pick < 3 || !permission) {
+            builder.field(new ValueField("repository", REPOSITORIES[random.nextInt(REPOSITORIES.length)]));
+        }
+        if (permission && random.nextInt(8) == 0) {
+            builder.field(new WildcardField("tenant"));
+        } else {
+            builder.field(new LongField("tenant", random.nextInt(permission ? 50_000 : 60_000)));
+        }
+        if (random.nextBoolean()) {
+            builder.field(random.nextInt(3) == 0 ? new WildcardField("key") : new ValueField("key", "key" + random.nextInt(4)));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,158 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermissionDeltaTest {
+
+    @Test
+    void testDeltasResolveLikeRebuiltSet() {
+        Random random = new Random(17);
+        for (int round = 0; round < 60; round++) {
+            PermissionSnapshotStore store = new PermissionSnapshotStore();
+            store.put("alice", PermissionIndexTest.randomPermissions(random, 1 + random.nextInt(10)));
+            for (int step = 0; step < 12; step++) {
+                // Compile first so the delta is applied to an existing index.
+                store.getPermissionIndex("alice");
+                List<ResourcePermission> current = new ArrayList<>(store.snapshot().getPermissionSet("alice"));
+                Set<ResourcePermission> granted = PermissionIndexTest.randomPermissions(random, random.nextInt(3));
+                Set<ResourcePermission> revoked = new LinkedHashSet<>();
+                if (!current.isEmpty() && random.nextBoolean()) {
+                    revoked.add(current.get(random.nextInt(current.size())));
+                }
+                store.apply("alice", granted, revoked);
+
+                Set<ResourcePermission> permissionSet = store.snapshot().getPermissionSet("alice");
+                PermissionIndex index = store.getPermissionIndex("alice");
+                Map<Object, UserAccessLevel> decided = new HashMap<>();
+                for (int i = 0; i < 40; i++) {
+                    ResourceIdentity ri = PermissionIndexTest.randomIdentity(random);
+                    UserAccessLevel level = index.getLevel(ri);
+                    assertEquals(ReferenceAccessChecker.getLevel(permissionSet, ri), level);
+                    assertEquals(decided.computeIfAbsent(index.decisionClass(ri), key -> level), level);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDeltaReportsEffectiveChanges() {
+        ResourcePermission anyKey = permission(new WildcardField("key"), UserAccessLevel.READ);
+        ResourcePermission secret = permission(new ValueField("key", "secret"), UserAccessLevel.NONE);
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", Set.of(anyKey)));
+
+        PermissionDelta granted = store.grant("alice", secret);
+        assertEquals(2, granted.version());
+        assertEquals(Set.of(secret), granted.granted());
+        assertFalse(granted.patternChanged());
+        assertEquals(UserAccessLevel.NONE, store.getDecision("alice", key("secret")).level());
+
+        PermissionDelta repeated = store.grant("alice", secret);
+        assertTrue(repeated.isEmpty());
+        assertEquals(2, store.version());
+
+        PermissionDelta revoked = store.revoke("alice", anyKey);
+        assertTrue(revoked.patternChanged());
+        assertEquals(Set.of(secret), store.snapshot().getPermissionSet("alice"));
+    }
+
+    @Test
+    void testAffectsOnlyIdentitiesTheChangeScoresFor() {
+        ResourcePermission anyKey = permission(new WildcardField("key"), UserAccessLevel.READ);
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", Set.of(anyKey)));
+
+        PermissionDelta delta = store.grant("alice", permission(new ValueField("key", "secret"), UserAccessLevel.NONE));
+
+        assertTrue(delta.affects(key("secret")));
+        assertFalse(delta.affects(key("public")));
+    }
+
+    @Test
+    void testCacheKeepsDecisionsTheDeltaCannotAffect() {
+        ResourcePermission anyKey = permission(new WildcardField("key"), UserAccessLevel.WRITE);
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of(
+                "alice", Set.of(anyKey), "bob", Set.of(anyKey)));
+        CachingUserAccessChecker cache = new CachingUserAccessChecker(new UserAccessChecker(store), 16);
+        cache.getLevel("alice", key("public"));
+        cache.getLevel("alice", key("secret"));
+        cache.getLevel("bob", key("secret"));
+
+        cache.invalidate(store.grant("alice", permission(new ValueField("key", "secret"), UserAccessLevel.NONE)));
+
+        assertEquals(2, cache.size());
+        assertEquals(UserAccessLevel.NONE, cache.getLevel("alice", key("secret")));
+        assertEquals(UserAccessLevel.WRITE, cache.getLevel("bob", key("secret")));
+
+        cache.invalidate(store.revoke("alice", anyKey));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testCompiledControlPatchesCachedIndex() {
+        ResourcePermission anyKey = permission(new WildcardField("key"), UserAccessLevel.WRITE);
+        ResourcePermission secret = permission(new ValueField("key", "secret"), UserAccessLevel.NONE);
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", Set.of(anyKey)));
+        CompiledUserAccessControl compiled = new CompiledUserAccessControl(store::getPermissionSet);
+        assertEquals(UserAccessLevel.WRITE, compiled.getPermissionIndex("alice").getLevel(key("secret")));
+
+        compiled.invalidate(store.grant("alice", secret));
+
+        assertEquals(UserAccessLevel.NONE, compiled.getPermissionIndex("alice").getLevel(key("secret")));
+        assertEquals(Set.of(anyKey, secret), compiled.getPermissionSet("alice"));
+    }
+
+    @Test
+    void testCompiledControlFollowsStoreDeltas() {
+        ResourcePermission anyKey = permission(new WildcardField("key"), UserAccessLevel.WRITE);
+        ResourcePermission secret = permission(new ValueField("key", "secret"), UserAccessLevel.NONE);
+        ResourcePermission readme = permission(new ValueField("key", "readme"), UserAccessLevel.READ);
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", Set.of(anyKey)));
+        CompiledUserAccessControl compiled = new CompiledUserAccessControl(store);
+        compiled.getPermissionIndex("alice");
+
+        compiled.invalidate(store.grant("alice", secret));
+        compiled.invalidate(store.grant("alice", readme));
+        compiled.invalidate(store.revoke("alice", secret));
+        assertEquals(List.copyOf(store.getPermissionSet("alice")), List.copyOf(compiled.getPermissionSet("alice")));
+        assertEquals(anyKey, compiled.getPermissionSet("alice").iterator().next());
+
+        compiled.invalidate("alice");
+        assertEquals(List.of(anyKey, readme), List.copyOf(compiled.getPermissionSet("alice")));
+    }
+
+    @Test
+    void testCompiledControlDropsIndexThatDriftedFromStore() {
+        ResourcePermission anyKey = permission(new WildcardField("key"), UserAccessLevel.WRITE);
+        ResourcePermission secret = permission(new ValueField("key", "secret"), UserAccessLevel.NONE);
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", Set.of(anyKey)));
+        CompiledUserAccessControl compiled = new CompiledUserAccessControl(store::getPermissionSet);
+        compiled.getPermissionIndex("alice");
+
+        // The compiled view missed both changes, so the next delta no longer matches its first permission.
+        store.revoke("alice", anyKey);
+        store.grant("alice", secret);
+        compiled.invalidate(store.grant("alice", anyKey));
+        assertEquals(List.copyOf(store.getPermissionSet("alice")), List.copyOf(compiled.getPermissionSet("alice")));
+        assertEquals(UserAccessLevel.NONE, compiled.getPermissionIndex("alice").getLevel(key("secret")));
+    }
+
+    private static ResourcePermission permission(IdentityField field, UserAccessLevel level) {
+        return new ResourcePermission(new Builder().field(field).build(), level);
+    }
+
+    private static ResourceIdentity key(String value) {
+        return new Builder().field(new ValueField("key", value)).build();
+    }
+}
@@ -0,0 +1,175 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermissionIndexTest {
+
+    private static final String[] FIELDS = {"field1", "field2", "field3", "field4"};
+    private static final String[] VALUES = {"value1", "value2", "xyz"};
+
+    @Test
+    void testEmptyPermissionSetResolvesToNone() {
+        ResourceIdentity ri = new Builder().field(new ValueField("field1", "value1")).build();
+        assertEquals(UserAccessLevel.NONE, PermissionIndex.of(null).getLevel(ri));
+        assertEquals(UserAccessLevel.NONE, PermissionIndex.of(Set.of()).getLevel(ri));
+        assertTrue(PermissionIndex.of(Set.of()).getPermissionSet().isEmpty());
+    }
+
+    @Test
+    void testExactMatchIsMoreSpecificThanWildcard() {
+        Set<ResourcePermission> permissions = new LinkedHashSet<>();
+        permissions.add(permission(UserAccessLevel.READ, new WildcardField("key")));
+        permissions.add(permission(UserAccessLevel.WRITE, new ValueField("key", "config/payment.yml")));
+        PermissionIndex index = PermissionIndex.of(permissions);
+
+        assertEquals(UserAccessLevel.WRITE, index.getLevel(identity(new ValueField("key", "config/payment.yml"))));
+        assertEquals(UserAccessLevel.READ, index.getLevel(identity(new ValueField("key", "reports/monthly.csv"))));
+        assertEquals(UserAccessLevel.READ, index.getLevel(identity(new ValueField("repository", "demo"))));
+    }
+
+    @Test
+    void testNoneWinsBestMatchTie() {
+        Set<ResourcePermission> permissions = new LinkedHashSet<>();
+        permissions.add(permission(UserAccessLevel.WRITE, new WildcardField("field1"), new ValueField("field2", "value2")));
+        permissions.add(permission(UserAccessLevel.NONE, new ValueField("field1", "value1"), new WildcardField("field2")));
+        PermissionIndex index = PermissionIndex.of(permissions);
+
+        assertEquals(UserAccessLevel.NONE,
+                index.getLevel(identity(new ValueField("field1", "value1"), new ValueField("field2", "value2"))));
+        assertEquals(UserAccessLevel.WRITE,
+                index.getLevel(identity(new ValueField("field1", "xyz"), new ValueField("field2", "value2"))));
+    }
+
+    @Test
+    void testCompiledUserAccessControlReusesIndexUntilInvalidated() {
+        Set<ResourcePermission> permissions = Set.of(permission(UserAccessLevel.READ, new WildcardField("key")));
+        int[] loads = new int[1];
+        CompiledUserAccessControl compiled = new CompiledUserAccessControl(userName -> {
+            loads[0]++;
+            return permissions;
+        });
+        UserAccessChecker checker = new UserAccessChecker(compiled);
+        ResourceIdentity ri = identity(new ValueField("key", "a"));
+
+        assertEquals(UserAccessLevel.READ, checker.getLevel("user1", ri));
+        assertEquals(UserAccessLevel.READ, checker.getLevel("user1", ri));
+        assertSame(compiled.getPermissionIndex("user1"), compiled.getPermissionIndex("user1"));
+        assertEquals(permissions, compiled.getPermissionSet("user1"));
+        assertEquals(1, loads[0]);
+
+        compiled.invalidate("user1");
+        checker.getLevel("user1", ri);
+        assertEquals(2, loads[0]);
+
+        compiled.invalidateAll();
+        checker.getLevel("user1", ri);
+        assertEquals(3, loads[0]);
+    }
+
+    @Test
+    void testIndexMatchesReferenceOnRandomPolicies() {
+        Random random = new Random(42);
+        for (int round = 0; round < 300; round++) {
+            Set<ResourcePermission> permissions = randomPermissions(random, 1 + random.nextInt(12));
+            UserAccessChecker checker = new UserAccessChecker(userName -> permissions);
+            PermissionIndex index = PermissionIndex.of(permissions);
+            for (int i = 0; i < 40; i++) {
+                ResourceIdentity ri = randomIdentity(random);
+                UserAccessLevel expected = ReferenceAccessChecker.getLevel(permissions, ri);
+                assertEquals(expected, index.getLevel(ri), () -> "index " + ri.getFieldMap());
+                assertEquals(expected, checker.getLevel("user1", ri), () -> "scan " + ri.getFieldMap());
+            }
+        }
+    }
+
+    @Test
+    void testSparseFieldsAcrossManyNamesMatchReference() {
+        // Each permission holds two of forty field names, so most levels of the tree are skipped.
+        Random random = new Random(10);
+        for (int round = 0; round < 100; round++) {
+            Set<ResourcePermission> permissions = new LinkedHashSet<>();
+            int size = 1 + random.nextInt(30);
+            while (permissions.size() < size) {
+                permissions.add(new ResourcePermission(sparseIdentity(random, 2),
+                        UserAccessLevel.values()[random.nextInt(UserAccessLevel.values().length)]));
+            }
+            PermissionIndex index = PermissionIndex.of(permissions);
+            for (int i = 0; i < 40; i++) {
+                ResourceIdentity ri = sparseIdentity(random, 6);
+                assertEquals(ReferenceAccessChecker.getLevel(permissions, ri), index.getLevel(ri),
+                        () -> "index " + ri.getFieldMap());
+            }
+        }
+    }
+
+    @Test
+    void testIdentitiesInSameDecisionClassResolveAlike() {
+        Random random = new Random(11);
+        for (int round = 0; round < 100; round++) {
+            PermissionIndex index = PermissionIndex.of(randomPermissions(random, 1 + random.nextInt(12)));
+            Map<Object, UserAccessLevel> decided = new HashMap<>();
+            for (int i = 0; i < 60; i++) {
+                ResourceIdentity ri = randomIdentity(random);
+                UserAccessLevel level = index.getLevel(ri);
+                assertEquals(decided.computeIfAbsent(index.decisionClass(ri), key -> level), level);
+            }
+        }
+    }
+
+    static Set<ResourcePermission> randomPermissions(Random random, int size) {
+        Set<ResourcePermission> permissions = new HashSet<>();
+        UserAccessLevel[] levels = UserAccessLevel.values();
+        while (permissions.size() < size) {
+            permissions.add(new ResourcePermission(randomIdentity(random), levels[random.nextInt(levels.length)]));
+        }
+        return permissions;
+    }
+
+    static ResourceIdentity randomIdentity(Random random) {
+        Builder builder = new Builder();
+        for (String name : FIELDS) {
+            int pick = random.nextInt(VALUES.length + 3);
+            if (pick < VALUES.length) {
+                builder.field(new ValueField(name, VALUES[pick]));
+            } else if (pick == VALUES.length) {
+                builder.field(new WildcardField(name));
+            } else if (pick == VALUES.length + 1 && random.nextBoolean()) {
+                builder.field(new ValueField(name, "*"));
+            }
+        }
+        return builder.build();
+    }
+
+    private static ResourceIdentity sparseIdentity(Random random, int fieldCount) {
+        Builder builder = new Builder();
+        for (int i = 0; i < fieldCount; i++) {
+            String name = "field" + random.nextInt(40);
+            builder.field(random.nextInt(4) == 0 ? new WildcardField(name) : new ValueField(name, VALUES[random.nextInt(2)]));
+        }
+        return builder.build();
+    }
+
+    private static ResourcePermission permission(UserAccessLevel level, IdentityField... fields) {
+        return new ResourcePermission(identity(fields), level);
+    }
+
+    private static ResourceIdentity identity(IdentityField... fields) {
+        Builder builder = new Builder();
+        for (IdentityField field : fields) {
+            builder.field(field);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,97 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PermissionInternerTest {
+
+    @Test
+    void testEqualInstancesBecomeOneCanonicalInstance() {
+        PermissionInterner interner = new PermissionInterner();
+
+        ResourcePermission first = interner.permission(demoRead());
+        ResourcePermission second = interner.permission(demoRead());
+
+        assertSame(first, second);
+        assertSame(first.getIdentity(), interner.identity(demoRead().getIdentity()));
+        assertSame(first.getIdentity().getFieldMap().get("key"), interner.field(new WildcardField("key")));
+        assertEquals(1, interner.permissionCount());
+        assertEquals(1, interner.identityCount());
+        assertEquals(2, interner.fieldCount());
+    }
+
+    @Test
+    void testIdentitiesShareFieldsAcrossLevels() {
+        PermissionInterner interner = new PermissionInterner();
+
+        ResourcePermission read = interner.permission(demoRead());
+        ResourcePermission write = interner.permission(new ResourcePermission(demoRead().getIdentity(), UserAccessLevel.WRITE));
+        ResourceIdentity other = interner.identity(new Builder()
+                .field(new ValueField("repository", "demo"))
+                .field(new ValueField("key", "secret"))
+                .build());
+
+        assertNotSame(read, write);
+        assertSame(read.getIdentity(), write.getIdentity());
+        assertSame(read.getIdentity().getFieldMap().get("repository"), other.getFieldMap().get("repository"));
+    }
+
+    @Test
+    void testSetsKeepOrderAndEquality() {
+        PermissionInterner interner = new PermissionInterner();
+        Set<ResourcePermission> permissionSet = PermissionIndexTest.randomPermissions(new Random(9), 10);
+
+        Set<ResourcePermission> shared = interner.permissions(permissionSet);
+
+        assertEquals(permissionSet, shared);
+        assertEquals(new ArrayList<>(permissionSet), new ArrayList<>(shared));
+        List<ResourcePermission> again = new ArrayList<>(interner.permissions(permissionSet));
+        List<ResourcePermission> sharedList = new ArrayList<>(shared);
+        for (int i = 0; i < again.size(); i++) {
+            assertSame(sharedList.get(i), again.get(i));
+        }
+    }
+
+    @Test
+    void testPolicyReaderSharesEqualGrantsAcrossUsers() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PolicyWriter.write(Map.of("alice", Set.of(demoRead()), "bob", Set.of(demoRead())), out);
+
+        Map<String, Set<ResourcePermission>> read = PolicyReader.readPermissions(new ByteArrayInputStream(out.toByteArray()));
+
+        assertSame(read.get("alice").iterator().next(), read.get("bob").iterator().next());
+    }
+
+    @Test
+    void testPolicyLoaderSharesGrantsAcrossLoads() throws IOException {
+        PermissionInterner interner = new PermissionInterner();
+        PolicyLoader loader = new PolicyLoader.Builder(PolicyLoader.Format.CSV).interner(interner).build();
+
+        PermissionSnapshotStore first = loader.load(new ByteArrayInputStream("alice,READ,repository=demo,key=*\n".getBytes()));
+        PermissionSnapshotStore second = loader.load(new ByteArrayInputStream("bob,READ,repository=demo,key=*\n".getBytes()));
+
+        assertSame(first.snapshot().getPermissionSet("alice").iterator().next(),
+                second.snapshot().getPermissionSet("bob").iterator().next());
+        assertEquals(1, interner.permissionCount());
+    }
+
+    private static ResourcePermission demoRead() {
+        return new ResourcePermission(new Builder()
+                .field(new ValueField("repository", "demo"))
+                .field(new WildcardField("key"))
+                .build(), UserAccessLevel.READ);
+    }
+}
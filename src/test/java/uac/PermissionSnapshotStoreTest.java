@@ -0,0 +1,74 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermissionSnapshotStoreTest {
+
+    @Test
+    void testEachWritePublishesNextVersion() {
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", keyGrant(UserAccessLevel.READ)));
+        assertEquals(1, store.version());
+
+        assertEquals(2, store.put("bob", keyGrant(UserAccessLevel.WRITE)));
+        assertEquals(3, store.remove("alice"));
+        assertEquals(4, store.update(update -> update
+                .put("alice", keyGrant(UserAccessLevel.WRITE))
+                .put("carol", keyGrant(UserAccessLevel.NONE))));
+
+        assertEquals(Set.of("alice", "bob", "carol"), store.snapshot().users());
+        assertEquals(new PermissionSnapshotStore.Decision(UserAccessLevel.WRITE, 4), store.getDecision("alice", key("a")));
+        assertSame(store.snapshot().getPermissionSet("carol"), store.getPermissionSet("carol"));
+    }
+
+    @Test
+    void testSnapshotStaysConsistentAfterLaterWrites() {
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", keyGrant(UserAccessLevel.READ)));
+        PermissionSnapshotStore.Snapshot snapshot = store.snapshot();
+
+        store.put("alice", keyGrant(UserAccessLevel.WRITE));
+        store.replaceAll(Map.of("bob", keyGrant(UserAccessLevel.READ)));
+
+        assertEquals(new PermissionSnapshotStore.Decision(UserAccessLevel.READ, 1), snapshot.getDecision("alice", key("a")));
+        assertEquals(UserAccessLevel.NONE, new UserAccessChecker(store).getLevel("alice", key("a")));
+        assertTrue(store.getPermissionSet("alice").isEmpty());
+        assertEquals(Set.of("bob"), store.snapshot().users());
+    }
+
+    @Test
+    void testConcurrentWritersAreAllPublished() throws InterruptedException {
+        PermissionSnapshotStore store = new PermissionSnapshotStore();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int writer = t;
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 50; i++) {
+                    store.put("user" + writer + "-" + i, keyGrant(UserAccessLevel.READ));
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(400, store.version());
+        assertEquals(400, store.snapshot().users().size());
+    }
+
+    private static Set<ResourcePermission> keyGrant(UserAccessLevel level) {
+        return Set.of(new ResourcePermission(new Builder().field(new WildcardField("key")).build(), level));
+    }
+
+    private static ResourceIdentity key(String value) {
+        return new Builder().field(new ValueField("key", value)).build();
+    }
+}
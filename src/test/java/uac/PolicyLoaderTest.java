@@ -0,0 +1,141 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolicyLoaderTest {
+
+    private static final ResourceIdentity DEMO_ANY_KEY = new Builder()
+            .field(new ValueField("repository", "demo"))
+            .field(new WildcardField("key"))
+            .build();
+    private static final ResourceIdentity DEMO_SECRET = new Builder()
+            .field(new ValueField("repository", "demo"))
+            .field(new ValueField("key", "secret, \"quoted\""))
+            .build();
+
+    @Test
+    void testLoadsCsv() throws IOException {
+        String csv = """
+                user,level,fields
+                # comment
+                alice,WRITE,repository=demo,key=*
+                alice,none,repository=demo,"key=secret, ""quoted\"\"\"
+
+                bob,READ,repository=demo,key=*
+                """;
+
+        PermissionSnapshotStore store = new PolicyLoader.Builder(PolicyLoader.Format.CSV).build().load(stream(csv));
+
+        Iterator<ResourcePermission> alice = store.snapshot().getPermissionSet("alice").iterator();
+        assertEquals(new ResourcePermission(DEMO_ANY_KEY, UserAccessLevel.WRITE), alice.next());
+        assertEquals(new ResourcePermission(DEMO_SECRET, UserAccessLevel.NONE), alice.next());
+        assertFalse(alice.hasNext());
+        assertEquals(Set.of(new ResourcePermission(DEMO_ANY_KEY, UserAccessLevel.READ)),
+                store.snapshot().getPermissionSet("bob"));
+        assertEquals(UserAccessLevel.NONE, store.getDecision("alice", DEMO_SECRET).level());
+    }
+
+    @Test
+    void testLoadsJsonLines() throws IOException {
+        String json = """
+                {"user": "alice", "level": "WRITE", "fields": {"repository": "demo", "key": "*"}}
+                {"level": "NONE", "note": "ignored", "user": "alice", "fields": {"repository": "demo", "key": "secret, \\"quoted\\""}}
+                """;
+
+        PermissionSnapshotStore store = new PolicyLoader.Builder(PolicyLoader.Format.JSON_LINES).build().load(stream(json));
+
+        assertEquals(List.of(new ResourcePermission(DEMO_ANY_KEY, UserAccessLevel.WRITE),
+                        new ResourcePermission(DEMO_SECRET, UserAccessLevel.NONE)),
+                new ArrayList<>(store.snapshot().getPermissionSet("alice")));
+    }
+
+    @Test
+    void testParallelChunksKeepFileOrderAndShareIdentities() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            csv.append("user").append(i % 7).append(',').append(i % 3 == 0 ? "READ" : "WRITE")
+                    .append(",repository=repo").append(i % 11).append(",key=*\n");
+        }
+
+        PermissionSnapshotStore store = new PolicyLoader.Builder(PolicyLoader.Format.CSV)
+                .chunkLines(64)
+                .parallelism(4)
+                .build()
+                .load(stream(csv.toString()));
+
+        ResourceIdentity first = store.snapshot().getPermissionSet("user0").iterator().next().getIdentity();
+        assertEquals(new Builder().field(new ValueField("repository", "repo0")).field(new WildcardField("key")).build(), first);
+        for (int u = 1; u < 7; u++) {
+            // user1's first line is i = 1 (repo1), user2's is i = 2 (repo2), and so on.
+            ResourcePermission permission = store.snapshot().getPermissionSet("user" + u).iterator().next();
+            assertEquals("repo" + u, permission.getIdentity().getFieldMap().get("repository").getValue());
+        }
+        for (ResourcePermission permission : store.snapshot().getPermissionSet("user6")) {
+            if (permission.getIdentity().equals(first)) {
+                assertSame(first, permission.getIdentity());
+            }
+        }
+    }
+
+    @Test
+    void testReportsLineOfBadGrant() {
+        String csv = "alice,WRITE,repository=demo\nalice,MAYBE,repository=demo\n";
+        PolicyLoader loader = new PolicyLoader.Builder(PolicyLoader.Format.CSV).build();
+
+        IOException ex = assertThrows(IOException.class, () -> loader.load(stream(csv)));
+        assertTrue(ex.getMessage().startsWith("line 2:"), ex.getMessage());
+    }
+
+    @Test
+    void testReportsProgress() throws IOException {
+        List<PolicyLoader.Progress> reports = new ArrayList<>();
+        String csv = "alice,WRITE,repository=demo\nbob,READ,repository=demo\nbob,READ,repository=demo\n";
+
+        new PolicyLoader.Builder(PolicyLoader.Format.CSV)
+                .chunkLines(1)
+                .progressInterval(Duration.ZERO)
+                .progressListener(reports::add)
+                .build()
+                .load(stream(csv));
+
+        PolicyLoader.Progress last = reports.get(reports.size() - 1);
+        assertTrue(reports.size() > 1);
+        assertEquals(3, last.lines());
+        assertEquals(csv.length(), last.bytes());
+        assertEquals(2, last.permissions());
+        assertEquals(2, last.users());
+    }
+
+    @Test
+    void testLoadIntoReplacesStoreContents() throws IOException {
+        PermissionSnapshotStore store = new PermissionSnapshotStore();
+        store.put("carol", Set.of(new ResourcePermission(DEMO_ANY_KEY, UserAccessLevel.READ)));
+
+        long version = new PolicyLoader.Builder(PolicyLoader.Format.CSV).build()
+                .loadInto(stream("alice,WRITE,repository=demo,key=*\n"), store);
+
+        assertEquals(2, version);
+        assertEquals(Set.of("alice"), store.snapshot().users());
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,187 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolicyMinimizerTest {
+
+    private static final String[] FIELDS = {"repository", "key", "env"};
+    private static final String[] VALUES = {"demo", "prod", "config/payment.yml", "config/eu/tax.yml", "readme.md"};
+    private static final String[] LOOKUP_VALUES = {"demo", "prod", "config/payment.yml", "config/eu/tax.yml",
+            "readme.md", "config/other.yml", "config/eu/other.yml", "config", "staging"};
+    private static final String[] PREFIXES = {"config", "config/eu"};
+
+    private final PolicyMinimizer minimizer = new PolicyMinimizer();
+
+    @Test
+    void testRemovesDuplicatesAndShadowedGrants() {
+        ResourcePermission demoRead = permission(UserAccessLevel.READ, "demo", "*");
+        ResourcePermission demoWrite = permission(UserAccessLevel.WRITE, "demo", "*");
+        ResourcePermission payment = permission(UserAccessLevel.WRITE, "demo", "config/payment.yml");
+        ResourcePermission fallback = permission(UserAccessLevel.READ, "*", "*");
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(fallback, demoRead, demoWrite, payment));
+
+        PolicyMinimizer.Result result = minimizer.minimize(permissionSet);
+        assertEquals(new LinkedHashSet<>(List.of(fallback, demoWrite)), result.permissionSet());
+        assertEquals(List.of(new PolicyMinimizer.Removal(demoRead, PolicyMinimizer.Reason.DUPLICATE),
+                new PolicyMinimizer.Removal(payment, PolicyMinimizer.Reason.SHADOWED)), result.removed());
+    }
+
+    @Test
+    void testKeepsGrantThatOutranksAConflict() {
+        // Without the exact grant the wildcard grant ties with the NONE grant on key=secret.
+        ResourcePermission general = permission(UserAccessLevel.READ, "demo", "*");
+        ResourcePermission deny = permission(UserAccessLevel.NONE, "*", "secret");
+        ResourcePermission prod = permission(UserAccessLevel.WRITE, "prod", "*");
+        ResourcePermission exact = permission(UserAccessLevel.READ, "demo", "secret");
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(general, deny, prod, exact));
+
+        assertSame(permissionSet, minimizer.minimize(permissionSet).permissionSet());
+        assertFalse(minimizer.isRedundant(new LinkedHashSet<>(List.of(general, deny, prod)), exact));
+        assertTrue(minimizer.isRedundant(new LinkedHashSet<>(List.of(general, prod)), exact));
+    }
+
+    @Test
+    void testRemovesGrantsThatNeverWin() {
+        // Wherever the narrower grant matches, the broader one also matches through the repository wildcard.
+        ResourcePermission broad = new ResourcePermission(new Builder().field(new WildcardField("repository"))
+                .field(new PrefixField("key", "config")).build(), UserAccessLevel.WRITE);
+        ResourcePermission narrow = new ResourcePermission(new Builder()
+                .field(new PrefixField("key", "config")).build(), UserAccessLevel.NONE);
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(broad, narrow));
+
+        PolicyMinimizer.Result result = minimizer.minimize(permissionSet);
+        assertEquals(Set.of(broad), result.permissionSet());
+        assertEquals(List.of(new PolicyMinimizer.Removal(narrow, PolicyMinimizer.Reason.NEVER_WINS)), result.removed());
+        assertTrue(result.unchecked().isEmpty());
+    }
+
+    @Test
+    void testMinimizedSetResolvesLikeOriginal() {
+        Random random = new Random(25);
+        int removed = 0;
+        for (int round = 0; round < 300; round++) {
+            Set<ResourcePermission> permissionSet = new LinkedHashSet<>();
+            int size = 1 + random.nextInt(12);
+            while (permissionSet.size() < size) {
+                permissionSet.add(new ResourcePermission(randomIdentity(random, true),
+                        UserAccessLevel.values()[random.nextInt(UserAccessLevel.values().length)]));
+            }
+            PolicyMinimizer.Result result = minimizer.minimize(permissionSet);
+            assertEquals(permissionSet.iterator().next(), result.permissionSet().iterator().next());
+            assertEquals(permissionSet.size(), result.permissionSet().size() + result.removed().size());
+            removed += result.removed().size();
+            for (int i = 0; i < 200; i++) {
+                ResourceIdentity identity = randomIdentity(random, false);
+                assertEquals(ReferenceAccessChecker.getLevel(permissionSet, identity),
+                        ReferenceAccessChecker.getLevel(result.permissionSet(), identity));
+            }
+            assertTrue(minimizer.minimize(result.permissionSet()).removed().isEmpty());
+        }
+        assertTrue(removed > 100);
+    }
+
+    @Test
+    void testRemovesMostRedundancyFromLargeSet() {
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>();
+        permissionSet.add(permission(UserAccessLevel.READ, "*", "*"));
+        int redundant = 0;
+        for (int r = 0; r < 60; r++) {
+            String repository = "repo" + r;
+            permissionSet.add(permission(UserAccessLevel.WRITE, repository, "*"));
+            permissionSet.add(permission(UserAccessLevel.NONE, repository, "secret"));
+            for (int k = 0; k < 5; k++) {
+                permissionSet.add(permission(UserAccessLevel.READ, repository, "locked" + k));
+            }
+            for (int k = 0; k < 30; k++) {
+                permissionSet.add(permission(UserAccessLevel.WRITE, repository, "file" + k));
+            }
+            permissionSet.add(new ResourcePermission(new Builder().field(new ValueField("repository", repository))
+                    .field(new PrefixField("key", "config")).build(), UserAccessLevel.WRITE));
+            redundant += 31;
+        }
+
+        PolicyMinimizer.Result result = minimizer.minimize(permissionSet);
+        assertTrue(result.unchecked().isEmpty());
+        assertEquals(redundant, result.removed().size());
+        Random random = new Random(25);
+        for (int i = 0; i < 500; i++) {
+            ResourceIdentity identity = new Builder()
+                    .field(new ValueField("repository", "repo" + random.nextInt(62)))
+                    .field(new ValueField("key", random.nextBoolean() ? "config/app" + random.nextInt(3)
+                            : (random.nextBoolean() ? "file" : "locked") + random.nextInt(32))).build();
+            assertEquals(ReferenceAccessChecker.getLevel(permissionSet, identity),
+                    ReferenceAccessChecker.getLevel(result.permissionSet(), identity));
+        }
+    }
+
+    @Test
+    void testLeavesGrantsOverClassLimitUnchecked() {
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(
+                permission(UserAccessLevel.READ, "*", "*"), permission(UserAccessLevel.READ, "demo", "*")));
+        PolicyMinimizer.Result result = new PolicyMinimizer.Builder().maxClasses(2).build().minimize(permissionSet);
+        assertEquals(permissionSet, result.permissionSet());
+        assertEquals(List.of(permission(UserAccessLevel.READ, "demo", "*")), result.unchecked());
+        assertEquals(1, minimizer.minimize(permissionSet).removed().size());
+    }
+
+    @Test
+    void testCompactsLiveStore() {
+        Set<ResourcePermission> alice = new LinkedHashSet<>(List.of(
+                permission(UserAccessLevel.READ, "*", "*"), permission(UserAccessLevel.READ, "demo", "*")));
+        Set<ResourcePermission> bob = Set.of(permission(UserAccessLevel.WRITE, "demo", "*"));
+        PermissionSnapshotStore store = PermissionSnapshotStore.of(Map.of("alice", alice, "bob", bob));
+
+        Map<String, PolicyMinimizer.Result> compacted = minimizer.compact(store);
+        assertEquals(Set.of("alice"), compacted.keySet());
+        assertEquals(Set.of(permission(UserAccessLevel.READ, "*", "*")), store.snapshot().getPermissionSet("alice"));
+        assertEquals(bob, store.snapshot().getPermissionSet("bob"));
+
+        Set<ResourcePermission> before = store.snapshot().getPermissionSet("alice");
+        store.grant("alice", permission(UserAccessLevel.READ, "demo", "*"));
+        assertTrue(store.apply("alice", List.of(), List.of(permission(UserAccessLevel.READ, "demo", "*")), before)
+                .isEmpty());
+        assertEquals(2, store.snapshot().getPermissionSet("alice").size());
+    }
+
+    private static ResourcePermission permission(UserAccessLevel level, String repository, String key) {
+        return new ResourcePermission(new Builder().field(field("repository", repository))
+                .field(field("key", key)).build(), level);
+    }
+
+    private static IdentityField field(String name, String value) {
+        return value.equals("*") ? new WildcardField(name) : new ValueField(name, value);
+    }
+
+    private static ResourceIdentity randomIdentity(Random random, boolean permission) {
+        Builder builder = new Builder();
+        Set<String> used = new HashSet<>();
+        for (String name : FIELDS) {
+            int pick = random.nextInt(5);
+            if (!used.add(name) || pick == 4 && !permission) {
+                continue;
+            }
+            if (pick == 0) {
+                builder.field(new WildcardField(name));
+            } else if (pick == 1 || pick == 2) {
+                String[] values = permission ? VALUES : LOOKUP_VALUES;
+                builder.field(new ValueField(name, values[random.nextInt(values.length)]));
+            } else if (pick == 3 && (permission || random.nextInt(4) == 0)) {
+                builder.field(new PrefixField(name, PREFIXES[random.nextInt(PREFIXES.length)]));
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,94 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PolicyReaderTest {
+
+    @Test
+    void testRoundTripKeepsPermissionsAndFirstPermission() throws IOException {
+        Random random = new Random(7);
+        Map<String, Set<ResourcePermission>> permissionsByUser = new HashMap<>();
+        for (int u = 0; u < 50; u++) {
+            permissionsByUser.put("user" + u, PermissionIndexTest.randomPermissions(random, 1 + random.nextInt(12)));
+        }
+        permissionsByUser.put("nobody", Set.of());
+
+        Map<String, Set<ResourcePermission>> read = PolicyReader.readPermissions(
+                new ByteArrayInputStream(write(permissionsByUser)));
+
+        assertEquals(permissionsByUser, read);
+        for (Map.Entry<String, Set<ResourcePermission>> entry : permissionsByUser.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                assertEquals(entry.getValue().iterator().next(), read.get(entry.getKey()).iterator().next());
+            }
+        }
+    }
+
+    @Test
+    void testReadStoreResolvesLikeSource() throws IOException {
+        Random random = new Random(3);
+        Map<String, Set<ResourcePermission>> permissionsByUser = new HashMap<>();
+        for (int u = 0; u < 20; u++) {
+            permissionsByUser.put("user" + u, PermissionIndexTest.randomPermissions(random, 1 + random.nextInt(12)));
+        }
+
+        PermissionSnapshotStore store = PolicyReader.read(new ByteArrayInputStream(write(permissionsByUser)));
+
+        assertEquals(1, store.version());
+        for (int i = 0; i < 400; i++) {
+            String userName = "user" + random.nextInt(20);
+            ResourceIdentity ri = PermissionIndexTest.randomIdentity(random);
+            assertEquals(ReferenceAccessChecker.getLevel(permissionsByUser.get(userName), ri),
+                    store.getDecision(userName, ri).level());
+        }
+    }
+
+    @Test
+    void testRepeatedIdentitiesAreShared() throws IOException {
+        ResourceIdentity identity = new Builder().field(new ValueField("repository", "demo")).field(new WildcardField("key")).build();
+        Map<String, Set<ResourcePermission>> permissionsByUser = Map.of(
+                "alice", Set.of(new ResourcePermission(identity, UserAccessLevel.WRITE)),
+                "bob", Set.of(new ResourcePermission(identity, null)));
+
+        Map<String, Set<ResourcePermission>> read = PolicyReader.readPermissions(
+                new ByteArrayInputStream(write(permissionsByUser)));
+
+        ResourcePermission alice = read.get("alice").iterator().next();
+        ResourcePermission bob = read.get("bob").iterator().next();
+        assertSame(alice.getIdentity(), bob.getIdentity());
+        assertEquals(identity, alice.getIdentity());
+        assertNull(bob.getAccessLevel());
+    }
+
+    @Test
+    void testRejectsUnknownInput() {
+        assertThrows(IOException.class,
+                () -> PolicyReader.readPermissions(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+
+        Set<ResourcePermission> custom = new LinkedHashSet<>();
+        custom.add(new ResourcePermission(new Builder().field(new ValueField("key", "a") {
+        }).build(), UserAccessLevel.READ));
+        assertThrows(IllegalArgumentException.class, () -> write(Map.of("alice", custom)));
+    }
+
+    private static byte[] write(Map<String, Set<ResourcePermission>> permissionsByUser) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PolicyWriter.write(permissionsByUser, out);
+        return out.toByteArray();
+    }
+}
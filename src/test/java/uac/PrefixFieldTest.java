@@ -0,0 +1,170 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixFieldTest {
+
+    private static final String[] PATHS = {"config", "config/payment.yml", "config/eu", "config/eu/payment.yml",
+            "config/eu/tax/rates.yml", "secrets", "secrets/root-token", "secrets/eu/db", "readme.md"};
+    private static final String[] PREFIXES = {"config", "config/eu", "config/eu/tax", "secrets", "secrets/eu"};
+
+    @Test
+    void testNormalizesPrefix() {
+        assertEquals(new PrefixField("key", "config"), new PrefixField("key", "config/**"));
+        assertEquals(new PrefixField("key", "config"), new PrefixField("key", "config/"));
+        assertEquals("config/**", new PrefixField("key", "config").getValue());
+        assertTrue(new PrefixField("key", "config").matches("config/payment.yml"));
+        assertFalse(new PrefixField("key", "config").matches("config"));
+        assertFalse(new PrefixField("key", "config").matches("config/"));
+        assertFalse(new PrefixField("key", "config").matches("configuration/payment.yml"));
+        assertThrows(IllegalArgumentException.class, () -> new PrefixField("key", "/**"));
+    }
+
+    @Test
+    void testPrefixRanksBetweenExactAndWildcard() {
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(
+                permission(new WildcardField("key"), UserAccessLevel.READ),
+                permission(new PrefixField("key", "config"), UserAccessLevel.WRITE),
+                permission(new PrefixField("key", "config/eu"), UserAccessLevel.NONE),
+                permission(new ValueField("key", "config/eu/public.yml"), UserAccessLevel.READ)));
+        PermissionIndex index = PermissionIndex.of(permissionSet);
+
+        assertEquals(UserAccessLevel.READ, index.getLevel(key("readme.md")));
+        assertEquals(UserAccessLevel.WRITE, index.getLevel(key("config/payment.yml")));
+        assertEquals(UserAccessLevel.NONE, index.getLevel(key("config/eu/payment.yml")));
+        assertEquals(UserAccessLevel.READ, index.getLevel(key("config/eu/public.yml")));
+        assertEquals(UserAccessLevel.READ, index.getLevel(key("config")));
+        assertEquals(UserAccessLevel.READ, UserAccessChecker.getLevel(permissionSet, key("config")));
+        assertEquals(UserAccessLevel.NONE, UserAccessChecker.getLevel(permissionSet, key("config/eu/payment.yml")));
+    }
+
+    @Test
+    void testDeepPrefixesDoNotTie() {
+        String shallow = "a/".repeat(19) + "a";
+        String deep = shallow + "/a";
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(
+                permission(new PrefixField("key", shallow), UserAccessLevel.WRITE),
+                permission(new PrefixField("key", deep), UserAccessLevel.READ)));
+        ResourceIdentity below = key(deep + "/file");
+        assertEquals(UserAccessLevel.READ, UserAccessChecker.getLevel(permissionSet, below));
+        assertEquals(UserAccessLevel.READ, PermissionIndex.of(permissionSet).getLevel(below));
+        assertEquals(UserAccessLevel.READ, ReferenceAccessChecker.getLevel(permissionSet, below));
+
+        new PrefixField("key", "a/".repeat(LevelMask.MAX_PREFIX_DEPTH - 1) + "a");
+        assertThrows(IllegalArgumentException.class, () -> new PrefixField("key", "a/".repeat(LevelMask.MAX_PREFIX_DEPTH) + "a"));
+    }
+
+    @Test
+    void testDeepestPrefixesStillRankBelowOneWildcard() {
+        String deepest = "a/".repeat(LevelMask.MAX_PREFIX_DEPTH - 1) + "a";
+        Builder prefixes = new Builder();
+        Builder wildcards = new Builder();
+        Builder values = new Builder();
+        for (int i = 0; i < LevelMask.MAX_PREFIX_FIELDS; i++) {
+            prefixes.field(new PrefixField("path" + i, deepest));
+            wildcards.field(new WildcardField("path" + i));
+            values.field(new ValueField("path" + i, deepest + "/file"));
+        }
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(
+                new ResourcePermission(prefixes.field(new WildcardField("key")).build(), UserAccessLevel.READ),
+                new ResourcePermission(wildcards.field(new ValueField("key", "secret")).build(), UserAccessLevel.WRITE)));
+        ResourceIdentity lookup = values.field(new ValueField("key", "secret")).build();
+        assertEquals(UserAccessLevel.WRITE, UserAccessChecker.getLevel(permissionSet, lookup));
+        assertEquals(UserAccessLevel.WRITE, PermissionIndex.of(permissionSet).getLevel(lookup));
+
+        Builder tooMany = new Builder();
+        for (int i = 0; i <= LevelMask.MAX_PREFIX_FIELDS; i++) {
+            tooMany.field(new PrefixField("path" + i, "config"));
+        }
+        assertThrows(IllegalArgumentException.class, tooMany::build);
+    }
+
+    @Test
+    void testIndexedAndScannedResolveLikeReference() {
+        Random random = new Random(23);
+        for (int round = 0; round < 200; round++) {
+            Set<ResourcePermission> permissionSet = new HashSet<>();
+            int size = 1 + random.nextInt(12);
+            while (permissionSet.size() < size) {
+                permissionSet.add(new ResourcePermission(randomIdentity(random, true), randomLevel(random)));
+            }
+            PermissionIndex index = PermissionIndex.of(permissionSet);
+            Map<Object, UserAccessLevel> decided = new HashMap<>();
+            for (int i = 0; i < 40; i++) {
+                ResourceIdentity ri = randomIdentity(random, false);
+                UserAccessLevel expected = ReferenceAccessChecker.getLevel(permissionSet, ri);
+                assertEquals(expected, UserAccessChecker.getLevel(permissionSet, ri));
+                assertEquals(expected, index.getLevel(ri));
+                assertEquals(decided.computeIfAbsent(index.decisionClass(ri), k -> expected), expected);
+            }
+        }
+    }
+
+    @Test
+    void testPrefixGrantsSurviveFilesAndLoader() throws IOException {
+        Set<ResourcePermission> permissionSet = Set.of(permission(new PrefixField("key", "config"), UserAccessLevel.WRITE));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PolicyWriter.write(Map.of("alice", permissionSet), out);
+        assertEquals(permissionSet, PolicyReader.readPermissions(new ByteArrayInputStream(out.toByteArray())).get("alice"));
+
+        PermissionSnapshotStore store = new PolicyLoader.Builder(PolicyLoader.Format.CSV).build()
+                .load(new ByteArrayInputStream("alice,WRITE,key=config/**\n".getBytes()));
+        assertEquals(permissionSet, store.snapshot().getPermissionSet("alice"));
+    }
+
+    @Test
+    void testReverseLookupFindsPrefixHolders() {
+        ReverseAccessIndex index = ReverseAccessIndex.of(Map.of(
+                "alice", Set.of(permission(new PrefixField("key", "config"), UserAccessLevel.WRITE)),
+                "bob", Set.of(permission(new ValueField("key", "config/payment.yml"), UserAccessLevel.READ))));
+
+        assertEquals(Set.of("alice", "bob"), index.getUsers(key("config/payment.yml"), UserAccessLevel.READ));
+        assertEquals(Set.of("alice"), index.getUsers(key("config/tax.yml"), UserAccessLevel.READ));
+    }
+
+    private static ResourceIdentity randomIdentity(Random random, boolean permission) {
+        Builder builder = new Builder();
+        for (String name : new String[]{"repository", "key"}) {
+            int pick = random.nextInt(permission ? 5 : 4);
+            if (pick == 0) {
+                builder.field(new WildcardField(name));
+            } else if (pick == 1 && name.equals("repository")) {
+                builder.field(new ValueField(name, random.nextBoolean() ? "demo" : "prod"));
+            } else if (pick == 1 || pick == 2) {
+                builder.field(new ValueField(name, PATHS[random.nextInt(PATHS.length)]));
+            } else if (pick == 4) {
+                builder.field(new PrefixField(name, PREFIXES[random.nextInt(PREFIXES.length)]));
+            }
+        }
+        return builder.build();
+    }
+
+    private static UserAccessLevel randomLevel(Random random) {
+        return UserAccessLevel.values()[random.nextInt(UserAccessLevel.values().length)];
+    }
+
+    private static ResourcePermission permission(IdentityField field, UserAccessLevel level) {
+        return new ResourcePermission(new Builder().field(field).build(), level);
+    }
+
+    private static ResourceIdentity key(String value) {
+        return new Builder().field(new ValueField("key", value)).build();
+    }
+}
@@ -0,0 +1,100 @@
+package uac;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Straightforward score-every-permission resolution kept as an oracle for the optimised evaluation paths.
+ */
+final class ReferenceAccessChecker {
+
+    private ReferenceAccessChecker() {
+    }
+
+    static UserAccessLevel getLevel(Set<ResourcePermission> permissionSet, ResourceIdentity identity) {
+        if (permissionSet == null || permissionSet.isEmpty()) {
+            return UserAccessLevel.NONE;
+        }
+
+        final ResourceIdentity patternIdentity = permissionSet.iterator().next().getIdentity();
+        final ResourceIdentity lookupIdentity = getCompleteIdentity(identity, patternIdentity);
+
+        final Map<ResourcePermission, Integer> freqMap = new HashMap<>();
+        for (ResourcePermission permission : permissionSet) {
+            freqMap.put(permission, getFrequency(permission.getIdentity().getFieldMap(), lookupIdentity));
+        }
+
+        final int maxFreq = freqMap.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        if (maxFreq == 0) {
+            return UserAccessLevel.NONE;
+        }
+
+        final Set<ResourcePermission> bestMatch = new HashSet<>();
+        for (Map.Entry<ResourcePermission, Integer> entry : freqMap.entrySet()) {
+            if (Objects.equals(entry.getValue(), maxFreq)) {
+                bestMatch.add(entry.getKey());
+            }
+        }
+        return getResultedLevel(bestMatch);
+    }
+
+    private static ResourceIdentity getCompleteIdentity(ResourceIdentity input, ResourceIdentity pattern) {
+        final Set<String> fieldSetDiff = new HashSet<>(input.getFieldMap().keySet());
+        for (String fieldName : pattern.getFieldMap().keySet()) {
+            if (!fieldSetDiff.add(fieldName)) {
+                fieldSetDiff.remove(fieldName);
+            }
+        }
+        if (fieldSetDiff.isEmpty()) {
+            return input;
+        }
+
+        ResourceIdentity.Builder riBuilder = new ResourceIdentity.Builder();
+        for (String fieldName : fieldSetDiff) {
+            riBuilder = riBuilder.field(new WildcardField(fieldName));
+        }
+        for (IdentityField field : input.getFieldMap().values()) {
+            riBuilder = riBuilder.field(field);
+        }
+        return riBuilder.build();
+    }
+
+    private static UserAccessLevel getResultedLevel(Set<ResourcePermission> permissionSet) {
+        UserAccessLevel ual = UserAccessLevel.NONE;
+        for (ResourcePermission p : permissionSet) {
+            UserAccessLevel level = p.getAccessLevel();
+            if (level == UserAccessLevel.WRITE) {
+                ual = level;
+            } else if (level == UserAccessLevel.READ && ual != UserAccessLevel.WRITE) {
+                ual = level;
+            } else if (level == UserAccessLevel.NONE) {
+                return UserAccessLevel.NONE;
+            }
+        }
+        return ual;
+    }
+
+    private static int getFrequency(Map<String, IdentityField> fieldMap, ResourceIdentity lookupIdentity) {
+        int count = 0;
+        for (final IdentityField f : lookupIdentity.getFieldMap().values()) {
+            final IdentityField lookupField = fieldMap.get(f.getName());
+            if (lookupField == null) {
+                continue;
+            }
+            if (lookupField.equals(f)) {
+                count += LevelMask.EXACT;
+            } else if (lookupField.getType() == IdentityType.WILDCARD) {
+                count += LevelMask.WILDCARD;
+            } else if (lookupField instanceof PrefixField prefix && f.getType() == IdentityType.VALUE
+                    && f.getValue().length() > prefix.getPrefix().length() && f.getValue().startsWith(prefix.getPrefix())) {
+                count += LevelMask.prefix((int) prefix.getPrefix().chars().filter(c -> c == '/').count());
+            } else {
+                return 0;
+            }
+        }
+        return count;
+    }
+}
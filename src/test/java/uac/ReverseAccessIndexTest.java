@@ -0,0 +1,111 @@
+package uac;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReverseAccessIndexTest {
+
+    private ReverseAccessIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = ReverseAccessIndex.of(Map.of(
+                "alice", Set.of(permission(new WildcardField("key"), UserAccessLevel.WRITE)),
+                "bob", Set.of(permission(new WildcardField("key"), UserAccessLevel.READ)),
+                "carol", Set.of(
+                        permission(new ValueField("key", "config/payment.yml"), UserAccessLevel.WRITE),
+                        permission(new WildcardField("key"), UserAccessLevel.READ)),
+                "dave", Set.of(permission(new WildcardField("key"), UserAccessLevel.NONE))));
+    }
+
+    @Test
+    void testWritersOfResource() {
+        assertEquals(Set.of("alice", "carol"), index.getUsers(key("config/payment.yml"), UserAccessLevel.WRITE));
+        assertEquals(Set.of("alice"), index.getUsers(key("secrets/root-token"), UserAccessLevel.WRITE));
+    }
+
+    @Test
+    void testReadersIncludeWriters() {
+        assertEquals(Set.of("alice", "bob", "carol"), index.getUsers(key("secrets/root-token"), UserAccessLevel.READ));
+        assertEquals(Set.of("alice", "bob", "carol", "dave"), index.getUsers(key("x"), UserAccessLevel.NONE));
+    }
+
+    @Test
+    void testPutAndRemoveUpdatePostings() {
+        index.put("alice", Set.of(permission(new ValueField("key", "reports/monthly.csv"), UserAccessLevel.WRITE)));
+        assertEquals(Set.of("carol"), index.getUsers(key("config/payment.yml"), UserAccessLevel.WRITE));
+        assertEquals(Set.of("alice"), index.getUsers(key("reports/monthly.csv"), UserAccessLevel.WRITE));
+
+        index.remove("alice");
+        index.remove("nobody");
+        assertEquals(Set.of(), index.getUsers(key("reports/monthly.csv"), UserAccessLevel.WRITE));
+    }
+
+    @Test
+    void testCandidatesMustPassEveryField() {
+        Map<String, Set<ResourcePermission>> policy = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            policy.put("user" + i, Set.of(new ResourcePermission(new Builder()
+                    .field(new ValueField("repository", "repo" + i)).field(new WildcardField("key")).build(),
+                    UserAccessLevel.WRITE)));
+        }
+        // Leaves the repository out, so it matches whichever repository is asked for.
+        policy.put("auditor", Set.of(new ResourcePermission(new Builder()
+                .field(new ValueField("key", "readme.md")).build(), UserAccessLevel.READ)));
+        ReverseAccessIndex reverseIndex = ReverseAccessIndex.of(policy);
+
+        ResourceIdentity readme = new Builder().field(new ValueField("repository", "repo5"))
+                .field(new ValueField("key", "readme.md")).build();
+        assertEquals(Set.of("auditor", "user5"), reverseIndex.getUsers(readme, UserAccessLevel.READ));
+        assertEquals(Set.of("user5"), reverseIndex.getUsers(readme, UserAccessLevel.WRITE));
+
+        reverseIndex.put("user7", Set.of(new ResourcePermission(new Builder()
+                .field(new WildcardField("key")).build(), UserAccessLevel.WRITE)));
+        assertEquals(Set.of("user5", "user7"), reverseIndex.getUsers(readme, UserAccessLevel.WRITE));
+    }
+
+    @Test
+    void testMatchesPerUserResolutionOnRandomPolicies() {
+        Random random = new Random(7);
+        Map<String, Set<ResourcePermission>> policy = new HashMap<>();
+        for (int i = 0; i < 60; i++) {
+            policy.put("user" + i, PermissionIndexTest.randomPermissions(random, 1 + random.nextInt(6)));
+        }
+        ReverseAccessIndex reverseIndex = ReverseAccessIndex.of(policy);
+        for (int i = 0; i < 200; i++) {
+            ResourceIdentity identity = PermissionIndexTest.randomIdentity(random);
+            for (UserAccessLevel level : UserAccessLevel.values()) {
+                Set<String> expected = new TreeSet<>();
+                policy.forEach((user, permissions) -> {
+                    if (ReferenceAccessChecker.getLevel(permissions, identity).compareTo(level) >= 0) {
+                        expected.add(user);
+                    }
+                });
+                assertEquals(expected, reverseIndex.getUsers(identity, level));
+            }
+        }
+    }
+
+    private static ResourceIdentity key(String key) {
+        return new Builder()
+                .field(new ValueField("repository", "demo"))
+                .field(new ValueField("key", key))
+                .build();
+    }
+
+    private static ResourcePermission permission(IdentityField keyField, UserAccessLevel level) {
+        return new ResourcePermission(new Builder()
+                .field(new ValueField("repository", "demo"))
+                .field(keyField)
+                .build(), level);
+    }
+}
@@ -0,0 +1,126 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoleBasedAccessControlTest {
+
+    private static final ResourcePermission ANY_KEY_READ = permission(new WildcardField("key"), UserAccessLevel.READ);
+    private static final ResourcePermission ANY_KEY_WRITE = permission(new WildcardField("key"), UserAccessLevel.WRITE);
+    private static final ResourcePermission SECRET_NONE = permission(new ValueField("key", "secret"), UserAccessLevel.NONE);
+
+    @Test
+    void testNestedRolesFlattenInOrder() {
+        RoleBasedAccessControl uac = new RoleBasedAccessControl();
+        uac.putRole("reader", Set.of(ANY_KEY_READ), List.of());
+        uac.putRole("writer", Set.of(ANY_KEY_WRITE), List.of("reader"));
+        uac.putRole("auditor", Set.of(SECRET_NONE), List.of("writer"));
+        uac.assign("alice", List.of("auditor"));
+
+        assertEquals(List.of(SECRET_NONE, ANY_KEY_WRITE, ANY_KEY_READ), new ArrayList<>(uac.getPermissionSet("alice")));
+        UserAccessChecker checker = new UserAccessChecker(uac);
+        assertEquals(UserAccessLevel.NONE, checker.getLevel("alice", key("secret")));
+        assertEquals(UserAccessLevel.WRITE, checker.getLevel("alice", key("public")));
+        assertEquals(UserAccessLevel.NONE, checker.getLevel("bob", key("public")));
+    }
+
+    @Test
+    void testUsersWithSameRolesShareOneIndex() {
+        RoleBasedAccessControl uac = new RoleBasedAccessControl();
+        uac.putRole("reader", Set.of(ANY_KEY_READ), List.of());
+        uac.assign("alice", List.of("reader"));
+        uac.assign("bob", List.of("reader"));
+        uac.assign("carol", Set.of(SECRET_NONE), List.of("reader"));
+
+        assertSame(uac.getPermissionIndex("alice"), uac.getPermissionIndex("bob"));
+        assertNotSame(uac.getPermissionIndex("alice"), uac.getPermissionIndex("carol"));
+        assertEquals(2, uac.combinationCount());
+
+        uac.unassign("carol");
+        assertEquals(1, uac.combinationCount());
+        assertTrue(uac.getPermissionSet("carol").isEmpty());
+    }
+
+    @Test
+    void testDirectGrantOrderKeepsCombinationsApart() {
+        RoleBasedAccessControl uac = new RoleBasedAccessControl();
+        uac.putRole("reader", Set.of(ANY_KEY_READ), List.of());
+        uac.assign("alice", new LinkedHashSet<>(List.of(ANY_KEY_WRITE, SECRET_NONE)), List.of("reader"));
+        uac.assign("bob", new LinkedHashSet<>(List.of(SECRET_NONE, ANY_KEY_WRITE)), List.of("reader"));
+
+        assertEquals(2, uac.combinationCount());
+        assertEquals(List.of(ANY_KEY_WRITE, SECRET_NONE, ANY_KEY_READ), List.copyOf(uac.getPermissionSet("alice")));
+        assertEquals(List.of(SECRET_NONE, ANY_KEY_WRITE, ANY_KEY_READ), List.copyOf(uac.getPermissionSet("bob")));
+    }
+
+    @Test
+    void testRoleEditsReachEveryMember() {
+        Random random = new Random(11);
+        RoleBasedAccessControl uac = new RoleBasedAccessControl();
+        uac.putRole("base", PermissionIndexTest.randomPermissions(random, 4), List.of());
+        uac.putRole("team", PermissionIndexTest.randomPermissions(random, 3), List.of("base"));
+        uac.assign("alice", List.of("team"));
+        uac.assign("bob", List.of("base"));
+        for (int edit = 0; edit < 30; edit++) {
+            // Compile first so the edit is applied to existing indexes.
+            uac.getPermissionIndex("alice");
+            uac.getPermissionIndex("bob");
+            Set<ResourcePermission> base = PermissionIndexTest.randomPermissions(random, 1 + random.nextInt(6));
+            uac.putRole("base", base, List.of());
+
+            Set<ResourcePermission> bobExpected = new LinkedHashSet<>(base);
+            assertEquals(new ArrayList<>(bobExpected), new ArrayList<>(uac.getPermissionSet("bob")));
+            Set<ResourcePermission> alice = uac.getPermissionSet("alice");
+            assertTrue(alice.containsAll(base));
+            for (int i = 0; i < 30; i++) {
+                ResourceIdentity ri = PermissionIndexTest.randomIdentity(random);
+                assertEquals(ReferenceAccessChecker.getLevel(alice, ri), uac.getPermissionIndex("alice").getLevel(ri));
+                assertEquals(ReferenceAccessChecker.getLevel(uac.getPermissionSet("bob"), ri),
+                        uac.getPermissionIndex("bob").getLevel(ri));
+            }
+        }
+    }
+
+    @Test
+    void testRejectsInheritanceCycle() {
+        RoleBasedAccessControl uac = new RoleBasedAccessControl();
+        uac.putRole("a", Set.of(ANY_KEY_READ), List.of("b"));
+        uac.putRole("b", Set.of(), List.of("c"));
+
+        assertThrows(IllegalArgumentException.class, () -> uac.putRole("c", Set.of(), List.of("a")));
+        assertThrows(IllegalArgumentException.class, () -> uac.putRole("a", Set.of(), List.of("a")));
+    }
+
+    @Test
+    void testRolesDefinedLaterApplyToExistingMembers() {
+        RoleBasedAccessControl uac = new RoleBasedAccessControl();
+        uac.assign("alice", List.of("writer"));
+        assertEquals(UserAccessLevel.NONE, uac.getPermissionIndex("alice").getLevel(key("public")));
+
+        uac.putRole("writer", Set.of(ANY_KEY_WRITE), List.of());
+        assertEquals(UserAccessLevel.WRITE, uac.getPermissionIndex("alice").getLevel(key("public")));
+
+        uac.removeRole("writer");
+        assertEquals(UserAccessLevel.NONE, uac.getPermissionIndex("alice").getLevel(key("public")));
+    }
+
+    private static ResourcePermission permission(IdentityField field, UserAccessLevel level) {
+        return new ResourcePermission(new Builder().field(field).build(), level);
+    }
+
+    private static ResourceIdentity key(String value) {
+        return new Builder().field(new ValueField("key", value)).build();
+    }
+}
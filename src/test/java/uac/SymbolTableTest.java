@@ -0,0 +1,133 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolTableTest {
+
+    @Test
+    void testEqualFieldsShareCodes() {
+        SymbolTable table = new SymbolTable();
+        int code = table.internCode(new ValueField("repository", "demo"));
+        assertEquals(code, table.internCode(new ValueField("repository", "demo")));
+        assertEquals(code, table.findCode(new ValueField("repository", "demo")));
+        assertNotEquals(code, table.internCode(new ValueField("repository", "*")));
+        assertEquals(0, code & 1);
+    }
+
+    @Test
+    void testWildcardCodeMatchesInternedWildcardField() {
+        SymbolTable table = new SymbolTable();
+        int name = table.internName("key");
+        assertEquals(table.internCode(new WildcardField("key")), table.wildcardCode(name));
+        assertEquals(1, table.wildcardCode(name) & 1);
+    }
+
+    @Test
+    void testUnknownSymbolsAreNotInterned() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(SymbolTable.UNKNOWN, table.findName("tenant"));
+        assertEquals(SymbolTable.UNKNOWN, table.findCode(new ValueField("tenant", "acme")));
+        assertEquals(0, table.generation());
+    }
+
+    @Test
+    void testLookupResolvedBeforeInterningIsRefreshed() {
+        ResourceIdentity lookup = new Builder()
+                .field(new ValueField("symbol-test-repository", "symbol-test-demo"))
+                .build();
+        ResourcePermission other = new ResourcePermission(new Builder()
+                .field(new ValueField("symbol-test-repository", "symbol-test-other"))
+                .build(), UserAccessLevel.WRITE);
+        UserAccessChecker checker = new UserAccessChecker(userName -> Set.of(other));
+        assertEquals(UserAccessLevel.NONE, checker.getLevel("user1", lookup));
+
+        ResourcePermission permission = new ResourcePermission(lookup, UserAccessLevel.READ);
+        checker = new UserAccessChecker(userName -> Set.of(permission));
+        assertEquals(UserAccessLevel.READ, checker.getLevel("user1", lookup));
+    }
+
+    @Test
+    void testLookupResolvedDuringInterningIsNotKeptCurrent() throws InterruptedException {
+        IdentityField[] fields = {new WildcardField("race")};
+        for (int round = 0; round < 2000; round++) {
+            SymbolTable table = new SymbolTable();
+            AtomicBoolean resolving = new AtomicBoolean();
+            AtomicBoolean interned = new AtomicBoolean();
+            AtomicReference<IdentitySymbols> stale = new AtomicReference<>();
+            Thread reader = Thread.ofPlatform().start(() -> {
+                resolving.set(true);
+                while (!interned.get()) {
+                    IdentitySymbols symbols = IdentitySymbols.resolve(fields, table);
+                    if (symbols.names.length == 0) {
+                        stale.set(symbols);
+                    }
+                }
+            });
+            while (!resolving.get()) {
+                Thread.onSpinWait();
+            }
+            table.internCode(fields[0]);
+            interned.set(true);
+            reader.join();
+            // Symbols resolved before the name was published must be refreshed now that it is known.
+            assertTrue(stale.get() == null || !stale.get().isCurrent(table));
+        }
+    }
+
+    @Test
+    void testConstructingPermissionsInternsNothing() {
+        int generation = SymbolTable.shared().generation();
+        new ResourcePermission(new Builder()
+                .field(new ValueField("symbol-test-unused", "symbol-test-value"))
+                .build(), UserAccessLevel.READ);
+        assertEquals(generation, SymbolTable.shared().generation());
+        assertEquals(SymbolTable.UNKNOWN, SymbolTable.shared().findName("symbol-test-unused"));
+    }
+
+    @Test
+    void testFullTableIsReplacedAndSymbolsReinterned() {
+        AtomicReference<SymbolTable> holder = new AtomicReference<>(new SymbolTable(4));
+        SymbolTable first = SymbolTable.current(holder);
+        ResourceIdentity identity = new Builder().field(new ValueField("repository", "demo"))
+                .field(new ValueField("key", "readme.md")).build();
+        IdentitySymbols symbols = identity.internSymbols(first);
+        assertTrue(first.isFull());
+
+        SymbolTable second = SymbolTable.current(holder);
+        assertNotSame(first, second);
+        assertSame(second, SymbolTable.current(holder));
+        assertFalse(symbols.isCurrent(second));
+        IdentitySymbols reinterned = identity.internSymbols(second);
+        assertNotSame(symbols, reinterned);
+        assertTrue(reinterned.isInterned(second));
+        assertEquals(second.findCode(new ValueField("repository", "demo")), reinterned.codes[0]);
+    }
+
+    @Test
+    void testLookupSeesValuesInternedDuringScoring() {
+        for (int threshold : new int[]{Integer.MAX_VALUE, 1}) {
+            String name = "symbol-lazy-" + threshold;
+            Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(
+                    new ResourcePermission(new Builder().field(new WildcardField(name)).build(), UserAccessLevel.READ),
+                    new ResourcePermission(new Builder().field(new ValueField(name, "late")).build(),
+                            UserAccessLevel.WRITE)));
+            ResourceIdentity lookup = new Builder().field(new ValueField(name, "late")).build();
+            assertEquals(UserAccessLevel.WRITE,
+                    LevelMask.decide(UserAccessChecker.evaluate(permissionSet, lookup, threshold)));
+        }
+    }
+}
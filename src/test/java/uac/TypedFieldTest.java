@@ -0,0 +1,129 @@
+package uac;
+
+import org.junit.jupiter.api.Test;
+import uac.ResourceIdentity.Builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class TypedFieldTest {
+
+    private static final UUID[] PROJECTS = {new UUID(1, 2), new UUID(-1, 7), UUID.fromString("5f2b1c3e-8a4d-4e6f-9b0a-1c2d3e4f5a6b")};
+
+    @Test
+    void testComparesValuesWithoutText() {
+        assertEquals(new LongField("tenant", 42), new LongField("tenant", 42));
+        assertEquals(new LongField("tenant", 42).hashCode(), new LongField("tenant", 42).hashCode());
+        assertNotEquals(new LongField("tenant", 42), new LongField("tenant", 43));
+        assertNotEquals(new LongField("tenant", 42), new ValueField("tenant", "42"));
+        assertEquals("42", new LongField("tenant", 42).getValue());
+
+        assertEquals(new UuidField("project", PROJECTS[2]), new UuidField("project", UUID.fromString(PROJECTS[2].toString())));
+        assertNotEquals(new UuidField("project", PROJECTS[0]), new UuidField("project", PROJECTS[1]));
+        assertNotEquals(new UuidField("project", PROJECTS[2]), new ValueField("project", PROJECTS[2].toString()));
+        assertEquals(PROJECTS[1], new UuidField("project", PROJECTS[1]).getUuid());
+
+        assertEquals(new Builder().field(new LongField("tenant", 7)).field(new UuidField("project", PROJECTS[0])).build(),
+                new Builder().field(new UuidField("project", PROJECTS[0])).field(new LongField("tenant", 7)).build());
+        assertFalse(PrefixField.canMatch(new LongField("tenant", 7)));
+    }
+
+    @Test
+    void testScoresLikeValueFields() {
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(
+                new ResourcePermission(new Builder().field(new WildcardField("tenant"))
+                        .field(new WildcardField("project")).build(), UserAccessLevel.READ),
+                new ResourcePermission(new Builder().field(new LongField("tenant", 42))
+                        .field(new WildcardField("project")).build(), UserAccessLevel.WRITE),
+                new ResourcePermission(new Builder().field(new LongField("tenant", 42))
+                        .field(new UuidField("project", PROJECTS[0])).build(), UserAccessLevel.NONE)));
+        PermissionIndex index = PermissionIndex.of(permissionSet);
+
+        ResourceIdentity write = new Builder().field(new LongField("tenant", 42)).field(new UuidField("project", PROJECTS[1])).build();
+        ResourceIdentity none = new Builder().field(new LongField("tenant", 42)).field(new UuidField("project", PROJECTS[0])).build();
+        ResourceIdentity read = new Builder().field(new LongField("tenant", 41)).build();
+        assertEquals(UserAccessLevel.WRITE, UserAccessChecker.getLevel(permissionSet, write));
+        assertEquals(UserAccessLevel.WRITE, index.getLevel(write));
+        assertEquals(UserAccessLevel.NONE, index.getLevel(none));
+        assertEquals(UserAccessLevel.READ, index.getLevel(read));
+        assertEquals(UserAccessLevel.READ, index.getLevel(new Builder().field(new ValueField("tenant", "42")).build()));
+    }
+
+    @Test
+    void testIndexedAndScannedResolveLikeReference() {
+        Random random = new Random(22);
+        for (int round = 0; round < 200; round++) {
+            Set<ResourcePermission> permissionSet = new HashSet<>();
+            int size = 1 + random.nextInt(10);
+            while (permissionSet.size() < size) {
+                permissionSet.add(new ResourcePermission(randomIdentity(random),
+                        UserAccessLevel.values()[random.nextInt(UserAccessLevel.values().length)]));
+            }
+            PermissionIndex index = PermissionIndex.of(permissionSet);
+            for (int i = 0; i < 30; i++) {
+                ResourceIdentity ri = randomIdentity(random);
+                UserAccessLevel expected = ReferenceAccessChecker.getLevel(permissionSet, ri);
+                assertEquals(expected, UserAccessChecker.getLevel(permissionSet, ri));
+                assertEquals(expected, index.getLevel(ri));
+            }
+        }
+    }
+
+    @Test
+    void testTypedGrantsSurvivePolicyFiles() throws IOException {
+        Set<ResourcePermission> permissionSet = new LinkedHashSet<>(List.of(
+                new ResourcePermission(new Builder().field(new LongField("tenant", Long.MIN_VALUE))
+                        .field(new ValueField("key", "config")).build(), UserAccessLevel.WRITE),
+                new ResourcePermission(new Builder().field(new UuidField("project", PROJECTS[1]))
+                        .field(new WildcardField("key")).build(), UserAccessLevel.READ),
+                new ResourcePermission(new Builder().field(new LongField("tenant", -1L)).build(), UserAccessLevel.NONE)));
+        Map<String, Set<ResourcePermission>> permissionsByUser = Map.of("alice", permissionSet, "bob", Set.of());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PolicyWriter.write(permissionsByUser, out);
+        assertEquals(permissionsByUser, PolicyReader.readPermissions(new ByteArrayInputStream(out.toByteArray())));
+
+        Path file = Files.createTempFile("uac", ".uacp");
+        try {
+            PolicyWriter.write(permissionsByUser, file);
+            try (MappedPolicyStore store = MappedPolicyStore.open(file)) {
+                assertEquals(permissionSet, store.getPermissionSet("alice"));
+                assertEquals(permissionSet.iterator().next(), store.getPermissionSet("alice").iterator().next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static ResourceIdentity randomIdentity(Random random) {
+        Builder builder = new Builder();
+        switch (random.nextInt(3)) {
+            case 0 -> builder.field(new WildcardField("tenant"));
+            case 1 -> builder.field(new LongField("tenant", random.nextInt(3)));
+            default -> {
+            }
+        }
+        switch (random.nextInt(4)) {
+            case 0 -> builder.field(new WildcardField("project"));
+            case 1 -> builder.field(new UuidField("project", PROJECTS[random.nextInt(PROJECTS.length)]));
+            case 2 -> builder.field(new ValueField("project", PROJECTS[random.nextInt(PROJECTS.length)].toString()));
+            default -> {
+            }
+        }
+        return builder.build();
+    }
+}
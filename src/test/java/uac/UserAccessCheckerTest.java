@@ -6,7 +6,10 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import uac.ResourceIdentity.Builder;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
@@ -779,4 +782,84 @@ class UserAccessCheckerTest {
                 () -> fieldMap.put("other", otherField));
         assertEquals(UnsupportedOperationException.class, exception.getClass());
     }
+
+    @Test
+    void testBatchLevelsFollowInputOrder() {
+        Mockito.when(uac.getPermissionSet("user1")).thenReturn(uacRepository);
+        List<ResourceIdentity> identities = List.of(f1wf2vf3v, f1vf2wf3v, f1vf2vf3w, f1wf2wf3w,
+                f1wf2wf3v, f1vf2wf3w, f1wf2vf3w, f1vf2vf3v);
+
+        List<UserAccessLevel> expected = new ArrayList<>();
+        for (ResourceIdentity identity : identities) {
+            expected.add(checker.getLevel("user1", identity));
+        }
+        assertEquals(expected, checker.getLevels("user1", identities));
+        assertEquals(List.of(), checker.getLevels("user1", List.of()));
+    }
+
+    @Test
+    void testParallelBatchMatchesSequentialBatch() {
+        Mockito.when(uac.getPermissionSet("user1")).thenReturn(uacRepository);
+        List<ResourceIdentity> identities = new ArrayList<>();
+        String[] values = {"value1", "value2", "value3", "xyz"};
+        for (int i = 0; i < 2048; i++) {
+            identities.add(new Builder()
+                    .field(new ValueField("field1", values[i % 4]))
+                    .field(new ValueField("field2", values[i / 4 % 4]))
+                    .field(new ValueField("field3", values[i / 16 % 4]))
+                    .build());
+        }
+        assertEquals(checker.getLevels("user1", identities), checker.getLevels("user1", identities, true));
+    }
+
+    @Test
+    void testIdentityWiderThanScoreIsRejected() {
+        Builder widest = new Builder();
+        Builder wildcards = new Builder();
+        for (int i = 0; i < LevelMask.MAX_FIELDS; i++) {
+            widest.field(new ValueField("field" + i, "value"));
+            wildcards.field(new WildcardField("field" + i));
+        }
+        ResourceIdentity identity = widest.build();
+        List<ResourcePermission> permissions = List.of(new ResourcePermission(identity, UserAccessLevel.WRITE),
+                new ResourcePermission(wildcards.build(), UserAccessLevel.READ));
+        assertEquals(UserAccessLevel.WRITE, UserAccessChecker.getLevel(new HashSet<>(permissions), identity));
+
+        widest.field(new ValueField("field" + LevelMask.MAX_FIELDS, "value"));
+        assertThrows(IllegalArgumentException.class, widest::build);
+        assertThrows(IllegalArgumentException.class,
+                () -> IdentitySchema.of(new String[LevelMask.MAX_FIELDS + 1]));
+    }
+
+    @Test
+    void testBatchLevelsForUnknownUserAreNone() {
+        assertEquals(List.of(UserAccessLevel.NONE, UserAccessLevel.NONE),
+                checker.getLevels("user2", List.of(f1vf2vf3v, f1wf2wf3w)));
+    }
+
+    @Test
+    void testFilterKeepsIdentitiesWithRequiredLevel() {
+        Mockito.when(uac.getPermissionSet("user1")).thenReturn(uacRepository);
+        List<ResourceIdentity> catalog = List.of(f1wf2vf3v, f1vf2wf3v, f1vf2vf3w, f1wf2wf3w,
+                f1wf2wf3v, f1vf2wf3w, f1wf2vf3w, f1vf2vf3v);
+
+        assertEquals(List.of(f1vf2wf3v, f1vf2vf3w, f1vf2vf3v),
+                checker.filter("user1", catalog.stream(), UserAccessLevel.WRITE).toList());
+        assertEquals(List.of(f1vf2wf3v, f1vf2vf3w, f1wf2wf3w, f1wf2wf3v, f1wf2vf3w, f1vf2vf3v),
+                checker.filter("user1", catalog.stream(), UserAccessLevel.READ).toList());
+    }
+
+    @Test
+    void testFilterIsLazyOverUnboundedCatalog() {
+        Mockito.when(uac.getPermissionSet("user1")).thenReturn(uacRepository);
+        Stream<ResourceIdentity> catalog = Stream.iterate(0, i -> i + 1).map(i -> new Builder()
+                .field(new ValueField("field1", "value1"))
+                .field(new ValueField("field2", "key" + i))
+                .field(new ValueField("field3", i % 2 == 0 ? "value3" : "other"))
+                .build());
+
+        List<ResourceIdentity> writable = checker.filter("user1", catalog, UserAccessLevel.WRITE).limit(3).toList();
+        assertEquals(List.of("key0", "key2", "key4"),
+                writable.stream().map(ri -> ri.getFieldMap().get("field2").getValue()).toList());
+    }
 }